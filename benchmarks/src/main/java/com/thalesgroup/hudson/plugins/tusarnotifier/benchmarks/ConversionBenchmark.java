@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.benchmarks;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+import com.thalesgroup.hudson.plugins.tusarnotifier.exception.TusarNotifierException;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarConversionPipeline;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarFormatValidation;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierConversionService;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierLog;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierValidationService;
+import com.thalesgroup.hudson.plugins.tusarnotifier.transformer.TusarToolInfo;
+import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion and validation of one report, for each input format and report size.
+ * <p/>
+ * Next to the score, the 'megabytes' and 'files' counters give the throughput in MB/s and files/s;
+ * run with '-prof gc' (the default of {@link TusarNotifierBenchmarks}) for the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConversionBenchmark {
+
+    /**
+     * The directory of the generated reports, kept between the runs
+     */
+    private static final File REPORTS_DIR = new File(System.getProperty(ConversionBenchmark.class.getName() + ".reportsDir",
+            new File(System.getProperty("java.io.tmpdir"), "tusarnotifier-benchmarks").getPath()));
+
+    @Param({"JUNIT", "COBERTURA", "CPPCHECK", "TUSAR"})
+    public ReportFormat format;
+
+    @Param({"1KB", "1MB", "64MB", "1GB"})
+    public String size;
+
+    private TusarToolInfo tusarToolInfo;
+
+    private TusarNotifierConversionService conversionService;
+
+    private TusarNotifierValidationService validationService;
+
+    private TusarConversionPipeline pipeline;
+
+    private File workspace;
+
+    private File outputDir;
+
+    private File inputFile;
+
+    private File convertedFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, TusarNotifierException {
+        inputFile = ReportFormat.getReport(format, SyntheticReports.parseSize(size), REPORTS_DIR);
+        workspace = inputFile.getParentFile();
+        outputDir = new File(workspace, "output-" + format.name().toLowerCase() + "-" + size);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Can't create the directory '" + outputDir + "'.");
+        }
+
+        final BuildListener listener = new StreamBuildListener(new NullOutputStream());
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(BuildListener.class).toInstance(listener);
+                bind(TusarNotifierLog.class).in(Singleton.class);
+            }
+        });
+        tusarToolInfo = new TusarToolInfo(format.newMetricsType(), outputDir, "**/*.xml", System.currentTimeMillis(), 0, false, null, 0, false);
+        conversionService = injector.getInstance(TusarNotifierConversionService.class);
+        validationService = injector.getInstance(TusarNotifierValidationService.class);
+        pipeline = conversionService.getPipeline(tusarToolInfo);
+
+        if (!validationService.validateInputFile(tusarToolInfo, inputFile)) {
+            throw new IllegalStateException("The generated report '" + inputFile + "' is not a valid " + format + " report.");
+        }
+        convertedFile = new File(workspace, "converted-" + inputFile.getName());
+        if (!convertedFile.exists()) {
+            File target = conversionService.convert(tusarToolInfo, inputFile, workspace, outputDir);
+            if (!target.renameTo(convertedFile)) {
+                throw new IOException("Can't rename '" + target + "' to '" + convertedFile + "'.");
+            }
+        }
+    }
+
+    @Benchmark
+    public File convert(Throughput throughput) throws TusarNotifierException {
+        File target = conversionService.convert(tusarToolInfo, inputFile, workspace, outputDir);
+        throughput.processed(inputFile.length());
+        return target;
+    }
+
+    @Benchmark
+    public boolean validateInputFile(Throughput throughput) throws TusarNotifierException {
+        boolean valid = validationService.validateInputFile(tusarToolInfo, inputFile);
+        throughput.processed(inputFile.length());
+        return valid;
+    }
+
+    @Benchmark
+    public boolean validateOutputFile(Throughput throughput) throws TusarNotifierException {
+        boolean valid = validationService.validateOutputFile(tusarToolInfo, inputFile, convertedFile);
+        throughput.processed(convertedFile.length());
+        return valid;
+    }
+
+    /**
+     * The processing of a report in separated steps, each step reading its file
+     */
+    @Benchmark
+    public boolean separatedSteps(Throughput throughput) throws TusarNotifierException {
+        boolean valid = validationService.validateInputFile(tusarToolInfo, inputFile)
+                && validationService.validateOutputFile(tusarToolInfo, inputFile, conversionService.convert(tusarToolInfo, inputFile, workspace, outputDir));
+        throughput.processed(inputFile.length());
+        return valid;
+    }
+
+    /**
+     * The processing of a report in a single read, in separated steps when the format has no pipeline
+     */
+    @Benchmark
+    public boolean singlePass(Throughput throughput) throws TusarNotifierException {
+        if (pipeline == null) {
+            return separatedSteps(throughput);
+        }
+        boolean valid = conversionService.convertInSinglePass(tusarToolInfo, pipeline, inputFile, workspace, outputDir) != null;
+        throughput.processed(inputFile.length());
+        return valid;
+    }
+
+    @Benchmark
+    public boolean isTusarFormat(Throughput throughput) {
+        boolean valid = new TusarFormatValidation().isTusarFormat(convertedFile);
+        throughput.processed(convertedFile.length());
+        return valid;
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.benchmarks;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierConversionService;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierLog;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierReportProcessingService;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierValidationService;
+import com.thalesgroup.hudson.plugins.tusarnotifier.transformer.TusarNotifierBatchTransformer;
+import com.thalesgroup.hudson.plugins.tusarnotifier.transformer.TusarNotifierTransformer;
+import com.thalesgroup.hudson.plugins.tusarnotifier.transformer.TusarToolInfo;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierLogger;
+import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the dependency injection set up of a build, as done by the notifier for its configured tools
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InjectorBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int tools;
+
+    private final BuildListener listener = new StreamBuildListener(new NullOutputStream());
+
+    private Injector createBuildInjector() {
+        return Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(BuildListener.class).toInstance(listener);
+                bind(TusarNotifierLogger.class).in(Singleton.class);
+                bind(TusarNotifierLog.class).in(Singleton.class);
+                bind(TusarNotifierReportProcessingService.class).in(Singleton.class);
+            }
+        });
+    }
+
+    private TusarNotifierTransformer createTransformer(Injector injector, final TusarToolInfo tusarToolInfo) {
+        return injector.createChildInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(TusarToolInfo.class).toInstance(tusarToolInfo);
+                bind(TusarNotifierValidationService.class).in(Singleton.class);
+                bind(TusarNotifierConversionService.class).in(Singleton.class);
+            }
+        }).getInstance(TusarNotifierTransformer.class);
+    }
+
+    /**
+     * One injector for the build and a child injector for each tool
+     */
+    @Benchmark
+    public TusarNotifierBatchTransformer perBuild() {
+        Injector injector = createBuildInjector();
+        TusarNotifierBatchTransformer batchTransformer = injector.getInstance(TusarNotifierBatchTransformer.class);
+        for (int i = 0; i < tools; i++) {
+            batchTransformer.addTransformer(createTransformer(injector, newToolInfo(i)));
+        }
+        return batchTransformer;
+    }
+
+    /**
+     * A full injector for each tool, for comparison
+     */
+    @Benchmark
+    public TusarNotifierBatchTransformer perTool() {
+        TusarNotifierBatchTransformer batchTransformer = createBuildInjector().getInstance(TusarNotifierBatchTransformer.class);
+        for (int i = 0; i < tools; i++) {
+            batchTransformer.addTransformer(createTransformer(createBuildInjector(), newToolInfo(i)));
+        }
+        return batchTransformer;
+    }
+
+    private TusarToolInfo newToolInfo(int index) {
+        return new TusarToolInfo(ReportFormat.JUNIT.newMetricsType(), null, "tool" + index + "/**/*.xml", 0, 0, false, null, 0, false);
+    }
+}
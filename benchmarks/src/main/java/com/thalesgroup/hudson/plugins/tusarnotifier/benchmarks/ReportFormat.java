@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.benchmarks;
+
+import com.thalesgroup.dtkit.metrics.hudson.api.type.MetricsType;
+import com.thalesgroup.dtkit.metrics.hudson.model.CoberturaTusarHudsonCoverageType;
+import com.thalesgroup.dtkit.metrics.hudson.model.CppcheckTusarHudsonViolationsType;
+import com.thalesgroup.dtkit.metrics.hudson.model.JUnitTusarHudsonTestType;
+import com.thalesgroup.dtkit.util.converter.ConversionException;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.test.TusarTestType;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The benchmarked input formats, with the metrics type converting them and their report generator
+ */
+public enum ReportFormat {
+
+    JUNIT {
+        @Override
+        public MetricsType newMetricsType() {
+            return new JUnitTusarHudsonTestType(PATTERN, false, false, true);
+        }
+
+        @Override
+        void write(File target, long size) throws IOException {
+            SyntheticReports.writeJUnit(target, size);
+        }
+    },
+
+    COBERTURA {
+        @Override
+        public MetricsType newMetricsType() {
+            return new CoberturaTusarHudsonCoverageType(PATTERN, false, false, true);
+        }
+
+        @Override
+        void write(File target, long size) throws IOException {
+            SyntheticReports.writeCobertura(target, size);
+        }
+    },
+
+    CPPCHECK {
+        @Override
+        public MetricsType newMetricsType() {
+            return new CppcheckTusarHudsonViolationsType(PATTERN, false, false, true);
+        }
+
+        @Override
+        void write(File target, long size) throws IOException {
+            SyntheticReports.writeCppcheck(target, size);
+        }
+    },
+
+    /**
+     * Native TUSAR reports, obtained by converting a JUnit report of the same size
+     */
+    TUSAR {
+        @Override
+        public MetricsType newMetricsType() {
+            return new TusarTestType(PATTERN, false, false);
+        }
+
+        @Override
+        void write(File target, long size) throws IOException {
+            File junit = getReport(JUNIT, size, target.getParentFile());
+            try {
+                JUNIT.newMetricsType().getInputMetric().convert(junit, target);
+            } catch (ConversionException ce) {
+                throw new IOException("Can't convert '" + junit + "' to a TUSAR report: " + ce.getMessage());
+            }
+        }
+    };
+
+    private static final String PATTERN = "**/*.xml";
+
+    /**
+     * Creates the metrics type of the format, as configured in a job
+     *
+     * @return a new metrics type
+     */
+    public abstract MetricsType newMetricsType();
+
+    abstract void write(File target, long size) throws IOException;
+
+    /**
+     * Gets a report of the format, generating it the first time only.
+     * Generated reports are kept in the given directory so that large reports are not rebuilt by each fork.
+     *
+     * @param format    the report format
+     * @param size      the size of the report, in bytes
+     * @param directory the directory of the generated reports
+     * @return the report file
+     * @throws IOException when the report can't be generated
+     */
+    public static synchronized File getReport(ReportFormat format, long size, File directory) throws IOException {
+        File report = new File(directory, format.name().toLowerCase() + "-" + size + ".xml");
+        if (report.exists()) {
+            return report;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create the directory '" + directory + "'.");
+        }
+        File tmp = new File(directory, report.getName() + ".tmp");
+        format.write(tmp, size);
+        if (!tmp.renameTo(report)) {
+            throw new IOException("Can't rename '" + tmp + "' to '" + report + "'.");
+        }
+        return report;
+    }
+}
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.benchmarks;
+
+import java.io.*;
+
+/**
+ * Generates synthetic input reports of a given size, close to the reports produced by the tools
+ */
+public final class SyntheticReports {
+
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+
+    private SyntheticReports() {
+    }
+
+    /**
+     * Parses a size such as '1KB', '64MB' or '1GB'
+     *
+     * @param size the size with its unit
+     * @return the number of bytes
+     */
+    public static long parseSize(String size) {
+        String value = size.trim().toUpperCase();
+        long unit = 1;
+        if (value.endsWith("KB")) {
+            unit = 1024L;
+        } else if (value.endsWith("MB")) {
+            unit = 1024L * 1024L;
+        } else if (value.endsWith("GB")) {
+            unit = 1024L * 1024L * 1024L;
+        }
+        if (unit != 1) {
+            value = value.substring(0, value.length() - 2);
+        } else if (value.endsWith("B")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        return Long.parseLong(value.trim()) * unit;
+    }
+
+    /**
+     * Writes a JUnit report of about the given size
+     *
+     * @param target the report file
+     * @param size   the size to reach, in bytes
+     * @throws IOException when the report can't be written
+     */
+    public static void writeJUnit(File target, long size) throws IOException {
+        ReportWriter writer = new ReportWriter(target, size);
+        try {
+            writer.write(XML_HEADER);
+            writer.write("<testsuites>\n");
+            int suite = 0;
+            do {
+                int tests = (int) Math.max(1, Math.min(100, writer.remaining() / 110));
+                int failures = (tests + 16) / 17;
+                writer.write("  <testsuite name=\"com.acme.module" + (suite % 50) + ".Suite" + suite
+                        + "\" tests=\"" + tests + "\" failures=\"" + failures + "\" errors=\"0\" skipped=\"0\" time=\"" + (tests * 12 / 1000.0)
+                        + "\" timestamp=\"2011-01-01T00:00:00\" hostname=\"localhost\">\n");
+                for (int test = 0; test < tests; test++) {
+                    writer.write("    <testcase classname=\"com.acme.module" + (suite % 50) + ".Suite" + suite
+                            + "\" name=\"test" + test + "\" time=\"0.012\"");
+                    if (test % 17 == 0) {
+                        writer.write(">\n      <failure message=\"expected:&lt;1&gt; but was:&lt;2&gt;\" type=\"java.lang.AssertionError\">"
+                                + "java.lang.AssertionError: expected:&lt;1&gt; but was:&lt;2&gt;\n"
+                                + "\tat org.junit.Assert.fail(Assert.java:91)\n"
+                                + "\tat com.acme.module" + (suite % 50) + ".Suite" + suite + ".test" + test + "(Suite" + suite + ".java:" + (test + 10) + ")\n"
+                                + "</failure>\n    </testcase>\n");
+                    } else {
+                        writer.write("/>\n");
+                    }
+                }
+                writer.write("  </testsuite>\n");
+                suite++;
+            } while (writer.remaining() > 0);
+            writer.write("</testsuites>\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes a Cobertura report of about the given size
+     *
+     * @param target the report file
+     * @param size   the size to reach, in bytes
+     * @throws IOException when the report can't be written
+     */
+    public static void writeCobertura(File target, long size) throws IOException {
+        ReportWriter writer = new ReportWriter(target, size);
+        try {
+            writer.write(XML_HEADER);
+            writer.write("<coverage line-rate=\"0.75\" branch-rate=\"0.5\" lines-covered=\"75\" lines-valid=\"100\" branches-covered=\"1\" branches-valid=\"2\" complexity=\"1.0\" version=\"1.9\" timestamp=\"1293840000000\">\n");
+            writer.write("  <sources>\n    <source>/src/main/java</source>\n  </sources>\n");
+            writer.write("  <packages>\n");
+            int pkg = 0;
+            do {
+                writer.write("    <package name=\"com.acme.module" + pkg + "\" line-rate=\"0.75\" branch-rate=\"0.5\" complexity=\"1.0\">\n      <classes>\n");
+                for (int clazz = 0; clazz < 50; clazz++) {
+                    String name = "com.acme.module" + pkg + ".Class" + clazz;
+                    writer.write("        <class name=\"" + name + "\" filename=\"com/acme/module" + pkg + "/Class" + clazz
+                            + ".java\" line-rate=\"0.75\" branch-rate=\"0.5\" complexity=\"1.0\">\n");
+                    writer.write("          <methods>\n            <method name=\"run\" signature=\"()V\" line-rate=\"0.75\" branch-rate=\"0.5\">\n              <lines>\n");
+                    for (int line = 1; line <= 4; line++) {
+                        writer.write("                <line number=\"" + (line + 10) + "\" hits=\"" + (line == 4 ? 0 : line) + "\" branch=\"false\"/>\n");
+                    }
+                    writer.write("              </lines>\n            </method>\n          </methods>\n          <lines>\n");
+                    for (int line = 1; line <= 4; line++) {
+                        writer.write("            <line number=\"" + (line + 10) + "\" hits=\"" + (line == 4 ? 0 : line) + "\" branch=\"false\"/>\n");
+                    }
+                    writer.write("          </lines>\n        </class>\n");
+                    if (writer.remaining() <= 0) {
+                        break;
+                    }
+                }
+                writer.write("      </classes>\n    </package>\n");
+                pkg++;
+            } while (writer.remaining() > 0);
+            writer.write("  </packages>\n</coverage>\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes a Cppcheck report (version 1 format) of about the given size
+     *
+     * @param target the report file
+     * @param size   the size to reach, in bytes
+     * @throws IOException when the report can't be written
+     */
+    public static void writeCppcheck(File target, long size) throws IOException {
+        final String[][] errors = {
+                {"nullPointer", "error", "Possible null pointer dereference: p"},
+                {"memleak", "error", "Memory leak: buffer"},
+                {"uninitvar", "error", "Uninitialized variable: count"},
+                {"unusedFunction", "style", "The function 'reset' is never used"},
+                {"passedByValue", "performance", "Function parameter 'name' should be passed by reference."}
+        };
+        ReportWriter writer = new ReportWriter(target, size);
+        try {
+            writer.write(XML_HEADER);
+            writer.write("<results>\n");
+            int index = 0;
+            do {
+                String[] error = errors[index % errors.length];
+                writer.write("  <error file=\"src/module" + (index % 50) + "/file" + (index % 1000) + ".c\" line=\"" + (index % 5000 + 1)
+                        + "\" id=\"" + error[0] + "\" severity=\"" + error[1] + "\" msg=\"" + error[2] + "\"/>\n");
+                index++;
+            } while (writer.remaining() > 0);
+            writer.write("</results>\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes ASCII content to a report file and counts the written bytes
+     */
+    private static class ReportWriter {
+
+        private final Writer writer;
+
+        private final long size;
+
+        private long written;
+
+        ReportWriter(File target, long size) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(target), "UTF-8"), 64 * 1024);
+            this.size = size;
+        }
+
+        void write(String content) throws IOException {
+            writer.write(content);
+            written += content.length();
+        }
+
+        long remaining() {
+            return size - written;
+        }
+
+        void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -24,6 +24,7 @@ package com.thalesgroup.hudson.plugins.tusarnotifier;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
+import com.google.inject.Injector;
 import com.google.inject.Singleton;
 import com.thalesgroup.dtkit.metrics.hudson.api.descriptor.CoverageTypeDescriptor;
 import com.thalesgroup.dtkit.metrics.hudson.api.descriptor.MeasureTypeDescriptor;
@@ -33,9 +34,15 @@ import com.thalesgroup.dtkit.metrics.hudson.api.type.*;
 import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierConversionService;
 import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierLog;
 import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierReportProcessingService;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierRoutingTable;
 import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierValidationService;
+import com.thalesgroup.hudson.plugins.tusarnotifier.transformer.TusarFailureBudget;
+import com.thalesgroup.hudson.plugins.tusarnotifier.transformer.TusarNotifierBatchResult;
+import com.thalesgroup.hudson.plugins.tusarnotifier.transformer.TusarNotifierBatchTransformer;
 import com.thalesgroup.hudson.plugins.tusarnotifier.transformer.TusarNotifierTransformer;
 import com.thalesgroup.hudson.plugins.tusarnotifier.transformer.TusarToolInfo;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.AutoType;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.AutoTypeCandidates;
 import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierLogger;
 import hudson.*;
 import hudson.model.*;
@@ -44,6 +51,8 @@ import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Notifier;
 import hudson.tasks.Publisher;
 import net.sf.json.JSONObject;
+import hudson.util.FormValidation;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
 import java.io.File;
@@ -67,14 +76,38 @@ public class TusarNotifier extends Notifier {
     private ViolationsType[] violations;
     private MeasureType[] measures;
 
+    private int maxWorkers;
+
+    private boolean singlePass;
+
+    private String failureBudget;
+
+    private int aggregateShards;
+
+    private int concurrentTools;
+
+    private boolean validationErrorsFiles;
+
     public TusarNotifier(TestType[] tests,
                          CoverageType[] coverages,
                          ViolationsType[] violations,
-                         MeasureType[] measures) {
+                         MeasureType[] measures,
+                         int maxWorkers,
+                         boolean singlePass,
+                         String failureBudget,
+                         int aggregateShards,
+                         int concurrentTools,
+                         boolean validationErrorsFiles) {
         this.tests = tests;
         this.coverages = coverages;
         this.violations = violations;
         this.measures = measures;
+        this.maxWorkers = maxWorkers;
+        this.singlePass = singlePass;
+        this.failureBudget = failureBudget;
+        this.aggregateShards = aggregateShards;
+        this.concurrentTools = concurrentTools;
+        this.validationErrorsFiles = validationErrorsFiles;
     }
 
     @SuppressWarnings("unused")
@@ -97,51 +130,85 @@ public class TusarNotifier extends Notifier {
         return measures;
     }
 
+    @SuppressWarnings("unused")
+    public int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    @SuppressWarnings("unused")
+    public boolean isSinglePass() {
+        return singlePass;
+    }
+
+    @SuppressWarnings("unused")
+    public String getFailureBudget() {
+        return failureBudget;
+    }
+
+    @SuppressWarnings("unused")
+    public int getAggregateShards() {
+        return aggregateShards;
+    }
+
+    @SuppressWarnings("unused")
+    public int getConcurrentTools() {
+        return concurrentTools;
+    }
+
+    @SuppressWarnings("unused")
+    public boolean isValidationErrorsFiles() {
+        return validationErrorsFiles;
+    }
+
     public BuildStepMonitor getRequiredMonitorService() {
         return BuildStepMonitor.NONE;
     }
 
 
-    private boolean processInputMetricType(final AbstractBuild<?, ?> build, final BuildListener listener, MetricsType metricsType, FilePath outputFileParent) throws IOException, InterruptedException {
-
-        final TusarNotifierLogger tusarNotifierLog = Guice.createInjector(new AbstractModule() {
-            @Override
-            protected void configure() {
-                bind(BuildListener.class).toInstance(listener);
-            }
-        }).getInstance(TusarNotifierLogger.class);
+    private TusarToolInfo getToolInfo(final AbstractBuild<?, ?> build, final BuildListener listener, MetricsType metricsType, FilePath outputFileParent) throws IOException, InterruptedException {
 
         //Retrieves the pattern
         String newExpandedPattern = metricsType.getPattern();
-        newExpandedPattern = newExpandedPattern.replaceAll("[\t\r\n]+", " ");
-        newExpandedPattern = Util.replaceMacro(newExpandedPattern, build.getEnvironment(listener));
+        if (newExpandedPattern != null) {
+            newExpandedPattern = newExpandedPattern.replaceAll("[\t\r\n]+", " ");
+            newExpandedPattern = Util.replaceMacro(newExpandedPattern, build.getEnvironment(listener));
+        }
 
         //Build a new build info
-        final TusarToolInfo tusarToolInfo = new TusarToolInfo(metricsType, new File(outputFileParent.toURI()), newExpandedPattern, build.getTimeInMillis());
+        return new TusarToolInfo(metricsType, new File(outputFileParent.toURI()), newExpandedPattern, build.getTimeInMillis(), maxWorkers, singlePass, TusarFailureBudget.parse(failureBudget), aggregateShards, validationErrorsFiles);
+    }
+
+    private TusarNotifierTransformer getTransformer(Injector injector, final AbstractBuild<?, ?> build, final BuildListener listener, MetricsType metricsType, FilePath outputFileParent) throws IOException, InterruptedException {
+
+        final TusarToolInfo tusarToolInfo = getToolInfo(build, listener, metricsType, outputFileParent);
 
         // Archiving tool reports into JUnit files
-        TusarNotifierTransformer tusarNotifierTransformer = Guice.createInjector(new AbstractModule() {
+        // The tool services are scoped to a child of the build injector
+        return injector.createChildInjector(new AbstractModule() {
             @Override
             protected void configure() {
-                bind(BuildListener.class).toInstance(listener);
                 bind(TusarToolInfo.class).toInstance(tusarToolInfo);
                 bind(TusarNotifierValidationService.class).in(Singleton.class);
                 bind(TusarNotifierConversionService.class).in(Singleton.class);
-                bind(TusarNotifierLog.class).in(Singleton.class);
-                bind(TusarNotifierReportProcessingService.class).in(Singleton.class);
             }
         }).getInstance(TusarNotifierTransformer.class);
+    }
 
-        boolean resultTransformation = build.getWorkspace().act(tusarNotifierTransformer);
-        if (!resultTransformation) {
-            build.setResult(Result.FAILURE);
-            tusarNotifierLog.info("Stopping recording.");
-            return false;
+    /**
+     * Adds an auto-detected type to the batch, with a tool for each type of the category recognizing its reports by their root element.
+     * The tools are created by the factory of their type, with the pattern and the options of the auto-detected type.
+     */
+    private <T extends MetricsType & Describable<T>> void addAutoTransformers(Injector injector, final AbstractBuild<?, ?> build, final BuildListener listener, MetricsType autoType, List<? extends Descriptor<T>> descriptors, FilePath outputFileParent, TusarNotifierBatchTransformer batchTransformer) throws IOException, InterruptedException {
+        TusarNotifierRoutingTable routingTable = new TusarNotifierRoutingTable();
+        List<TusarNotifierTransformer> transformers = new ArrayList<TusarNotifierTransformer>();
+        for (Descriptor<T> descriptor : descriptors) {
+            //The custom and the auto-detected types have no factory
+            MetricsType metricsType = AutoTypeCandidates.newCandidate(descriptor, autoType);
+            if (metricsType != null && routingTable.addTool(metricsType.getInputMetric()) != -1) {
+                transformers.add(getTransformer(injector, build, listener, metricsType, outputFileParent));
+            }
         }
-
-        return true;
-
-
+        batchTransformer.addAutoTransformers(getToolInfo(build, listener, autoType, outputFileParent), routingTable, transformers);
     }
 
     @Override
@@ -151,36 +218,35 @@ public class TusarNotifier extends Notifier {
 
         final StringBuffer sb = new StringBuffer();
 
-        final TusarNotifierLogger tusarNotifierLog = Guice.createInjector(new AbstractModule() {
+        // A single injector for the build, the services shared by all the tools are singletons
+        final Injector injector = Guice.createInjector(new AbstractModule() {
             @Override
             protected void configure() {
                 bind(BuildListener.class).toInstance(listener);
+                bind(TusarNotifierLogger.class).in(Singleton.class);
+                bind(TusarNotifierLog.class).in(Singleton.class);
+                bind(TusarNotifierReportProcessingService.class).in(Singleton.class);
             }
-        }).getInstance(TusarNotifierLogger.class);
-        tusarNotifierLog.info("Starting converting.");
-
+        });
 
-        TusarNotifierReportProcessingService tusarNotifierReportProcessingService = Guice.createInjector(new AbstractModule() {
-            @Override
-            protected void configure() {
-                bind(BuildListener.class).toInstance(listener);
-            }
-        }).getInstance(TusarNotifierReportProcessingService.class);
+        final TusarNotifierLogger tusarNotifierLog = injector.getInstance(TusarNotifierLogger.class);
+        tusarNotifierLog.info("Starting converting.");
 
 
-        boolean isInvoked = false;
+        // All the tools are processed with a single call to the node
+        TusarNotifierBatchTransformer batchTransformer = injector.getInstance(TusarNotifierBatchTransformer.class);
+        batchTransformer.setConcurrentTools(concurrentTools);
+        batchTransformer.setMaxWorkers(maxWorkers);
 
         // Apply conversion for all tests tools
         if (tests.length != 0) {
             FilePath outputFileParent = new FilePath(build.getWorkspace(), generatedTests);
             outputFileParent.mkdirs();
             for (TestType testsType : tests) {
-                tusarNotifierLog.info("Processing " + testsType.getDescriptor().getDisplayName());
-                if (!tusarNotifierReportProcessingService.isEmptyPattern(testsType.getPattern())) {
-                    boolean result = processInputMetricType(build, listener, testsType, outputFileParent);
-                    if (result) {
-                        isInvoked = true;
-                    }
+                if (testsType instanceof AutoType) {
+                    addAutoTransformers(injector, build, listener, testsType, TestTypeDescriptor.all(), outputFileParent, batchTransformer);
+                } else {
+                    batchTransformer.addTransformer(getTransformer(injector, build, listener, testsType, outputFileParent));
                 }
             }
             sb.append(";").append(generatedTests);
@@ -189,12 +255,10 @@ public class TusarNotifier extends Notifier {
             FilePath outputFileParent = new FilePath(build.getWorkspace(), generatedCoverage);
             outputFileParent.mkdirs();
             for (CoverageType coverageType : coverages) {
-                tusarNotifierLog.info("Processing " + coverageType.getDescriptor().getDisplayName());
-                if (!tusarNotifierReportProcessingService.isEmptyPattern(coverageType.getPattern())) {
-                    boolean result = processInputMetricType(build, listener, coverageType, outputFileParent);
-                    if (result) {
-                        isInvoked = true;
-                    }
+                if (coverageType instanceof AutoType) {
+                    addAutoTransformers(injector, build, listener, coverageType, CoverageTypeDescriptor.all(), outputFileParent, batchTransformer);
+                } else {
+                    batchTransformer.addTransformer(getTransformer(injector, build, listener, coverageType, outputFileParent));
                 }
             }
             sb.append(";").append(generatedCoverage);
@@ -203,12 +267,10 @@ public class TusarNotifier extends Notifier {
             FilePath outputFileParent = new FilePath(build.getWorkspace(), generatedViolations);
             outputFileParent.mkdirs();
             for (ViolationsType violationsType : violations) {
-                tusarNotifierLog.info("Processing " + violationsType.getDescriptor().getDisplayName());
-                if (!tusarNotifierReportProcessingService.isEmptyPattern(violationsType.getPattern())) {
-                    boolean result = processInputMetricType(build, listener, violationsType, outputFileParent);
-                    if (result) {
-                        isInvoked = true;
-                    }
+                if (violationsType instanceof AutoType) {
+                    addAutoTransformers(injector, build, listener, violationsType, ViolationsTypeDescriptor.all(), outputFileParent, batchTransformer);
+                } else {
+                    batchTransformer.addTransformer(getTransformer(injector, build, listener, violationsType, outputFileParent));
                 }
             }
             sb.append(";").append(generatedViolations);
@@ -217,17 +279,21 @@ public class TusarNotifier extends Notifier {
             FilePath outputFileParent = new FilePath(build.getWorkspace(), generatedMeasures);
             outputFileParent.mkdirs();
             for (MeasureType measureType : measures) {
-                tusarNotifierLog.info("Processing " + measureType.getDescriptor().getDisplayName());
-                if (!tusarNotifierReportProcessingService.isEmptyPattern(measureType.getPattern())) {
-                    boolean result = processInputMetricType(build, listener, measureType, outputFileParent);
-                    if (result) {
-                        isInvoked = true;
-                    }
+                if (measureType instanceof AutoType) {
+                    addAutoTransformers(injector, build, listener, measureType, MeasureTypeDescriptor.all(), outputFileParent, batchTransformer);
+                } else {
+                    batchTransformer.addTransformer(getTransformer(injector, build, listener, measureType, outputFileParent));
                 }
             }
             sb.append(";").append(generatedMeasures);
         }
 
+        TusarNotifierBatchResult batchResult = build.getWorkspace().act(batchTransformer);
+        build.addAction(new TusarNotifierAction(build, batchResult));
+        if (batchResult.hasFailures()) {
+            build.setResult(Result.FAILURE);
+        }
+
 
         // Remove the first character
         sb.delete(0, 1);
@@ -256,6 +322,21 @@ public class TusarNotifier extends Notifier {
             return true;
         }
 
+        @SuppressWarnings("unused")
+        public FormValidation doCheckFailureBudget(@QueryParameter String value) {
+            return checkFailureBudget(value);
+        }
+
+        /**
+         * Checks a failure budget, an empty budget is allowed
+         */
+        static FormValidation checkFailureBudget(String value) {
+            if (value == null || value.trim().length() == 0 || TusarFailureBudget.parse(value) != null) {
+                return FormValidation.ok();
+            }
+            return FormValidation.error("The failure budget must be a number of reports or a percentage of the reports, for instance 5 or 10%.");
+        }
+
         @Override
         public String getHelpFile() {
             return "/plugin/tusarnotifier/help.html";
@@ -295,7 +376,13 @@ public class TusarNotifier extends Notifier {
             return new TusarNotifier(tests.toArray(new TestType[tests.size()]),
                     coverages.toArray(new CoverageType[coverages.size()]),
                     violations.toArray(new ViolationsType[violations.size()]),
-                    measures.toArray(new MeasureType[measures.size()])
+                    measures.toArray(new MeasureType[measures.size()]),
+                    formData.optInt("maxWorkers", 0),
+                    formData.optBoolean("singlePass", false),
+                    formData.optString("failureBudget", null),
+                    formData.optInt("aggregateShards", 0),
+                    formData.optInt("concurrentTools", 0),
+                    formData.optBoolean("validationErrorsFiles", false)
             );
         }
     }
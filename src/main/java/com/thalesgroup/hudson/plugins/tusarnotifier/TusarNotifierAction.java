@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier;
+
+import com.thalesgroup.hudson.plugins.tusarnotifier.transformer.TusarNotifierBatchResult;
+import hudson.model.AbstractBuild;
+import hudson.model.Action;
+import hudson.model.Api;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Records the timings and the counters of the conversions of a build.
+ * They are displayed in the build page and available with the remote API, under 'tusarnotifier/api'.
+ */
+@ExportedBean
+public class TusarNotifierAction implements Action {
+
+    public final AbstractBuild<?, ?> owner;
+
+    private final TusarNotifierBatchResult result;
+
+    public TusarNotifierAction(AbstractBuild<?, ?> owner, TusarNotifierBatchResult result) {
+        this.owner = owner;
+        this.result = result;
+    }
+
+    public String getIconFileName() {
+        return "clock.gif";
+    }
+
+    public String getDisplayName() {
+        return "TUSAR Conversions";
+    }
+
+    public String getUrlName() {
+        return "tusarnotifier";
+    }
+
+    @Exported(inline = true)
+    public TusarNotifierBatchResult getResult() {
+        return result;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier;
+
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierAgentService;
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.ComputerListener;
+
+import java.io.IOException;
+
+/**
+ * Warms the XML stack of a node when it comes online, so that the first build on the node doesn't load the
+ * TUSAR schemas and the XML factories. The warm-up is enabled with the system property
+ * <code>com.thalesgroup.hudson.plugins.tusarnotifier.TusarNotifierComputerListener.warmUp=true</code> on the master.
+ */
+@Extension
+@SuppressWarnings("unused")
+public class TusarNotifierComputerListener extends ComputerListener {
+
+    private static final boolean WARM_UP = Boolean.getBoolean(TusarNotifierComputerListener.class.getName() + ".warmUp");
+
+    @Override
+    public void onOnline(Computer c, TaskListener listener) throws IOException, InterruptedException {
+        if (!WARM_UP) {
+            return;
+        }
+        VirtualChannel channel = c.getChannel();
+        if (channel != null) {
+            //The node goes online without waiting for the warm-up
+            channel.callAsync(new TusarNotifierAgentService.WarmUpCallable());
+        }
+    }
+}
@@ -0,0 +1,426 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.service;
+
+import com.thalesgroup.dtkit.metrics.model.InputMetric;
+import com.thalesgroup.dtkit.metrics.model.InputMetricXSL;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.CustomInputMetric;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierCompression;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierErrorCollector;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierFileTransfer;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierTemplatesCache;
+import org.xml.sax.*;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParser;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Validates, converts and validates again a report in a single read of the report.
+ * <p/>
+ * The report is parsed once: the SAX events go through the input schema validation, then through the
+ * compiled stylesheet, whose output events are both validated against the TUSAR schema and written to the
+ * output file. The output file is written once and never read back.
+ * <p/>
+ * A pipeline is only available for the stylesheet converters keeping the dtkit default conversion and
+ * validation, whose input schemas and TUSAR schemas can be compiled; the other converters keep
+ * the separated steps.
+ */
+public class TusarConversionPipeline {
+
+    /**
+     * The pipelines by input metric class, the input metrics without pipeline are mapped to UNAVAILABLE
+     */
+    private static final Map<String, TusarConversionPipeline> pipelines = new ConcurrentHashMap<String, TusarConversionPipeline>();
+
+    private static final TusarConversionPipeline UNAVAILABLE = new TusarConversionPipeline(null, null, null);
+
+    private final Schema inputSchema;
+
+    private final URL xslURL;
+
+    private final Schema outputSchema;
+
+    private TusarConversionPipeline(Schema inputSchema, URL xslURL, Schema outputSchema) {
+        this.inputSchema = inputSchema;
+        this.xslURL = xslURL;
+        this.outputSchema = outputSchema;
+    }
+
+    /**
+     * Gets the pipeline of an input metric
+     *
+     * @param inputMetric the input metric
+     * @return the pipeline, or null when the input metric must be processed in separated steps
+     */
+    public static TusarConversionPipeline getPipeline(InputMetric inputMetric) {
+        if (!(inputMetric instanceof InputMetricXSL) || inputMetric instanceof CustomInputMetric) {
+            return null;
+        }
+        String key = inputMetric.getClass().getName();
+        TusarConversionPipeline pipeline = pipelines.get(key);
+        if (pipeline == null) {
+            pipeline = createPipeline((InputMetricXSL) inputMetric);
+            pipelines.put(key, pipeline == null ? UNAVAILABLE : pipeline);
+        }
+        return pipeline == UNAVAILABLE ? null : pipeline;
+    }
+
+    private static TusarConversionPipeline createPipeline(InputMetricXSL inputMetric) {
+
+        //The input metrics with their own conversion or validation are not bypassed
+        if (!isDefaultBehavior(inputMetric)) {
+            return null;
+        }
+
+        Schema outputSchema = TusarSchemaRegistry.getInstance().getSchema(inputMetric.getOutputFormatType());
+        if (outputSchema == null) {
+            return null;
+        }
+
+        URL xslURL;
+        try {
+            xslURL = inputMetric.getXslFile() != null
+                    ? inputMetric.getXslFile().toURI().toURL()
+                    : getResource(inputMetric, inputMetric.getXslName());
+        } catch (IOException ioe) {
+            return null;
+        }
+        if (xslURL == null) {
+            return null;
+        }
+
+        Schema inputSchema = null;
+        String[] inputXsdNameList = inputMetric.getInputXsdNameList();
+        if (inputXsdNameList != null && inputXsdNameList.length != 0) {
+            Source[] sources = new Source[inputXsdNameList.length];
+            for (int i = 0; i < inputXsdNameList.length; i++) {
+                URL xsdURL = getResource(inputMetric, inputXsdNameList[i]);
+                if (xsdURL == null) {
+                    return null;
+                }
+                sources[i] = new StreamSource(xsdURL.toExternalForm());
+            }
+            try {
+                inputSchema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(sources);
+            } catch (SAXException se) {
+                return null;
+            }
+        }
+
+        return new TusarConversionPipeline(inputSchema, xslURL, outputSchema);
+    }
+
+    static boolean isDefaultBehavior(InputMetric inputMetric) {
+        try {
+            Class<?> inputMetricClass = inputMetric.getClass();
+            return isInherited(inputMetricClass.getMethod("convert", File.class, File.class))
+                    && isInherited(inputMetricClass.getMethod("convert", File.class, File.class, Map.class))
+                    && isInherited(inputMetricClass.getMethod("validateInputFile", File.class))
+                    && isInherited(inputMetricClass.getMethod("validateOutputFile", File.class));
+        } catch (NoSuchMethodException nsme) {
+            return false;
+        }
+    }
+
+    private static boolean isInherited(Method method) {
+        return method.getDeclaringClass() == InputMetricXSL.class || method.getDeclaringClass() == InputMetric.class;
+    }
+
+    static URL getResource(InputMetricXSL inputMetric, String name) {
+        if (name == null) {
+            return null;
+        }
+        URL url = null;
+        if (inputMetric.getXslResourceClass() != null) {
+            url = inputMetric.getXslResourceClass().getResource(name);
+        }
+        return url != null ? url : inputMetric.getClass().getResource(name);
+    }
+
+    /**
+     * Converts a report. The output file is deleted when the report or the converted content are not valid.
+     * A gzip compressed report is decompressed while it is read.
+     *
+     * @param inputFile  the report, plain or gzip compressed
+     * @param outputFile the TUSAR output file
+     * @return the validation errors of the report and of the converted content
+     * @throws IOException the report can't be read, converted or written
+     */
+    public Result convert(File inputFile, File outputFile) throws IOException {
+        return convert(inputFile, outputFile, new TusarNotifierErrorCollector(), new TusarNotifierErrorCollector());
+    }
+
+    /**
+     * Converts a report, the validation errors go to the given collectors.
+     * The output file is deleted when the report or the converted content are not valid.
+     *
+     * @param inputFile       the report, plain or gzip compressed
+     * @param outputFile      the TUSAR output file
+     * @param inputCollector  the collector of the validation errors of the report, closed by the conversion
+     * @param outputCollector the collector of the validation errors of the converted content, closed by the conversion
+     * @return the validation errors of the report and of the converted content
+     * @throws IOException the report can't be read, converted or written
+     */
+    public Result convert(File inputFile, File outputFile, TusarNotifierErrorCollector inputCollector, TusarNotifierErrorCollector outputCollector) throws IOException {
+
+        ErrorCollector inputErrors = new ErrorCollector(inputCollector);
+        ErrorCollector outputErrors = new ErrorCollector(outputCollector);
+
+        //A compressed report is decompressed while it is parsed
+        InputStream is = TusarNotifierCompression.open(inputFile);
+        //The output is written aside and replaces the previous output, which is never rewritten in place
+        File tmpOutputFile = TusarNotifierFileTransfer.getTempFile(outputFile);
+        OutputStream os;
+        try {
+            os = new BufferedOutputStream(new FileOutputStream(tmpOutputFile), 64 * 1024);
+        } catch (IOException ioe) {
+            is.close();
+            throw ioe;
+        }
+        boolean completed = false;
+        //The parser and the transformer factory come from the node pools, they are warm after the first conversions
+        TusarNotifierAgentService agentService = TusarNotifierAgentService.getInstance();
+        SAXTransformerFactory saxTransformerFactory = null;
+        SAXParser parser = null;
+        try {
+            saxTransformerFactory = agentService.borrowTransformerFactory();
+
+            //The converted events are written as they are and validated on the side
+            TransformerHandler serializer = saxTransformerFactory.newTransformerHandler();
+            serializer.setResult(new StreamResult(os));
+            ValidatorHandler outputValidator = outputSchema.newValidatorHandler();
+            outputValidator.setErrorHandler(outputErrors);
+
+            TransformerHandler transformerHandler = saxTransformerFactory.newTransformerHandler(
+                    TusarNotifierTemplatesCache.getInstance().getTemplates(xslURL));
+            transformerHandler.setSystemId(inputFile.toURI().toASCIIString());
+            transformerHandler.setResult(new SAXResult(new TeeContentHandler(serializer, outputValidator)));
+
+            parser = agentService.borrowSAXParser();
+            XMLReader reader = parser.getXMLReader();
+            reader.setErrorHandler(inputErrors);
+            if (inputSchema != null) {
+                ValidatorHandler inputValidator = inputSchema.newValidatorHandler();
+                inputValidator.setErrorHandler(inputErrors);
+                inputValidator.setContentHandler(transformerHandler);
+                reader.setContentHandler(inputValidator);
+            } else {
+                reader.setContentHandler(transformerHandler);
+            }
+
+            InputSource inputSource = new InputSource(is);
+            inputSource.setSystemId(inputFile.toURI().toASCIIString());
+            reader.parse(inputSource);
+            completed = true;
+
+        } catch (SAXParseException spe) {
+            //Not well-formed report, already collected
+            if (!inputErrors.hasErrors()) {
+                inputErrors.error(spe);
+            }
+        } catch (SAXException se) {
+            throw newConversionException(inputFile, se);
+        } catch (TransformerConfigurationException tce) {
+            throw newConversionException(inputFile, tce);
+        } finally {
+            if (parser != null) {
+                agentService.release(parser);
+            }
+            if (saxTransformerFactory != null) {
+                agentService.release(saxTransformerFactory);
+            }
+            inputCollector.close();
+            outputCollector.close();
+            is.close();
+            os.close();
+            if (!completed || inputErrors.hasErrors() || outputErrors.hasErrors()) {
+                tmpOutputFile.delete();
+                if (outputFile.exists() && !outputFile.delete()) {
+                    outputFile.deleteOnExit();
+                }
+            }
+        }
+
+        if (completed && !inputErrors.hasErrors() && !outputErrors.hasErrors()) {
+            TusarNotifierFileTransfer.replace(tmpOutputFile, outputFile);
+        }
+        return new Result(inputCollector, outputCollector);
+    }
+
+    /**
+     * Java 6 has no IOException with a cause, the cause is given afterwards
+     */
+    private static IOException newConversionException(File inputFile, Exception cause) {
+        IOException ioe = new IOException("Can't convert the file '" + inputFile + "': " + cause.getMessage());
+        ioe.initCause(cause);
+        return ioe;
+    }
+
+    /**
+     * The validation errors of a single pass conversion
+     */
+    public static class Result {
+
+        private final TusarNotifierErrorCollector inputErrors;
+
+        private final TusarNotifierErrorCollector outputErrors;
+
+        private Result(TusarNotifierErrorCollector inputErrors, TusarNotifierErrorCollector outputErrors) {
+            this.inputErrors = inputErrors;
+            this.outputErrors = outputErrors;
+        }
+
+        public boolean isInputValid() {
+            return inputErrors.isEmpty();
+        }
+
+        public boolean isOutputValid() {
+            return outputErrors.isEmpty();
+        }
+
+        public TusarNotifierErrorCollector getInputErrors() {
+            return inputErrors;
+        }
+
+        public TusarNotifierErrorCollector getOutputErrors() {
+            return outputErrors;
+        }
+    }
+
+    private static class ErrorCollector implements ErrorHandler {
+
+        private final TusarNotifierErrorCollector errors;
+
+        private ErrorCollector(TusarNotifierErrorCollector errors) {
+            this.errors = errors;
+        }
+
+        public void warning(SAXParseException exception) {
+        }
+
+        public void error(SAXParseException exception) {
+            errors.add(format(exception));
+        }
+
+        public void fatalError(SAXParseException exception) throws SAXException {
+            errors.add(format(exception));
+            throw exception;
+        }
+
+        private static String format(SAXParseException exception) {
+            if (exception.getLineNumber() < 0) {
+                return exception.getMessage();
+            }
+            return "line " + exception.getLineNumber() + ", column " + exception.getColumnNumber() + ": " + exception.getMessage();
+        }
+
+        public boolean hasErrors() {
+            return !errors.isEmpty();
+        }
+    }
+
+    /**
+     * Forwards the SAX events to two content handlers
+     */
+    private static class TeeContentHandler implements ContentHandler {
+
+        private final ContentHandler first;
+
+        private final ContentHandler second;
+
+        private TeeContentHandler(ContentHandler first, ContentHandler second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        public void setDocumentLocator(Locator locator) {
+            first.setDocumentLocator(locator);
+            second.setDocumentLocator(locator);
+        }
+
+        public void startDocument() throws SAXException {
+            first.startDocument();
+            second.startDocument();
+        }
+
+        public void endDocument() throws SAXException {
+            first.endDocument();
+            second.endDocument();
+        }
+
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            first.startPrefixMapping(prefix, uri);
+            second.startPrefixMapping(prefix, uri);
+        }
+
+        public void endPrefixMapping(String prefix) throws SAXException {
+            first.endPrefixMapping(prefix);
+            second.endPrefixMapping(prefix);
+        }
+
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            first.startElement(uri, localName, qName, atts);
+            second.startElement(uri, localName, qName, atts);
+        }
+
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            first.endElement(uri, localName, qName);
+            second.endElement(uri, localName, qName);
+        }
+
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            first.characters(ch, start, length);
+            second.characters(ch, start, length);
+        }
+
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            first.ignorableWhitespace(ch, start, length);
+            second.ignorableWhitespace(ch, start, length);
+        }
+
+        public void processingInstruction(String target, String data) throws SAXException {
+            first.processingInstruction(target, data);
+            second.processingInstruction(target, data);
+        }
+
+        public void skippedEntity(String name) throws SAXException {
+            first.skippedEntity(name);
+            second.skippedEntity(name);
+        }
+    }
+}
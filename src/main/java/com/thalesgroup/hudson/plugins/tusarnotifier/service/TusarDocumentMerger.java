@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.service;
+
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.TusarStreamWriter;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+
+/**
+ * Merges TUSAR documents with the same root element and the same category element (tests, coverage,
+ * violations or measures of a tool) into one document written as a stream: the merged document has the
+ * root and the category elements of its first document and the content of the category elements of all
+ * its documents.
+ */
+class TusarDocumentMerger {
+
+    private final TusarStreamWriter writer;
+
+    private boolean rootWritten;
+
+    private String category;
+
+    /**
+     * @param writer the writer of the merged document, the XML declaration is written at once
+     */
+    TusarDocumentMerger(TusarStreamWriter writer) throws IOException {
+        this.writer = writer;
+        writer.writeStartDocument();
+    }
+
+    /**
+     * Appends the content of the category element of a document
+     *
+     * @param reader the reader of the document, at the start of the document
+     * @param source the document name in the messages
+     * @throws XMLStreamException the document can't be read, or its category isn't the category of the first document
+     */
+    void append(XMLStreamReader reader, String source) throws XMLStreamException, IOException {
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (depth == 1) {
+                    if (!rootWritten) {
+                        writer.copyEvent(reader);
+                        rootWritten = true;
+                    }
+                    continue;
+                }
+                if (depth == 2) {
+                    if (category == null) {
+                        category = getElement(reader);
+                        writer.copyEvent(reader);
+                    } else if (!category.equals(getElement(reader))) {
+                        throw new XMLStreamException("The " + source + " has several categories.");
+                    }
+                    continue;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                if (depth < 2) {
+                    continue;
+                }
+            } else if (depth < 2 || (depth == 2 && event == XMLStreamConstants.CHARACTERS)) {
+                //Only the content of the category elements is copied
+                continue;
+            }
+            writer.copyEvent(reader);
+        }
+    }
+
+    /**
+     * Closes the root and the category elements
+     *
+     * @throws XMLStreamException no document had a category element
+     */
+    void finish() throws XMLStreamException, IOException {
+        if (category == null) {
+            throw new XMLStreamException("No category has been found.");
+        }
+        writer.writeEndDocument();
+    }
+
+    /**
+     * @return the name and the sorted attributes of the current element of a reader
+     */
+    static String getElement(XMLStreamReader reader) {
+        SortedMap<String, String> attributes = new TreeMap<String, String>();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            attributes.put(reader.getAttributeName(i).toString(), reader.getAttributeValue(i));
+        }
+        return reader.getName() + " " + attributes;
+    }
+
+    static XMLInputFactory newInputFactory() {
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.FALSE);
+        return inputFactory;
+    }
+}
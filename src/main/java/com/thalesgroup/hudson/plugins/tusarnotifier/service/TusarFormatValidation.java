@@ -1,27 +1,127 @@
 package com.thalesgroup.hudson.plugins.tusarnotifier.service;
 
 import com.thalesgroup.dtkit.metrics.model.OutputMetric;
-import com.thalesgroup.dtkit.tusar.model.TusarModel;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierCompression;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierDigest;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
-import java.io.File;
-import java.io.Serializable;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
+import java.io.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Gregory Boissinot
  */
 public class TusarFormatValidation implements Serializable {
 
+    private static final int MAX_VERIFIED_CONTENTS = 10000;
+
+    /**
+     * The SHA-256 of the contents already validated by this process, the least recently used first
+     */
+    private static final Set<String> verifiedContents = Collections.newSetFromMap(Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_VERIFIED_CONTENTS;
+        }
+    }));
+
+    /**
+     * Checks if a file is a TUSAR file, without validating it again when the same content
+     * has already been validated (for instance the copy of a validated input file)
+     *
+     * @param inputXMLFile the file to check
+     * @return true if the file is a valid TUSAR file, false otherwise
+     */
+    public boolean isVerifiedTusarFormat(File inputXMLFile) {
+
+        if (inputXMLFile == null) {
+            throw new NullPointerException("A file must be set.");
+        }
+
+        try {
+            if (verifiedContents.contains(TusarNotifierDigest.digest(inputXMLFile))) {
+                return true;
+            }
+        } catch (IOException ioe) {
+            return false;
+        }
+        return isTusarFormat(inputXMLFile);
+    }
+
     public boolean isTusarFormat(File inputXMLFile) {
 
         if (inputXMLFile == null) {
             throw new NullPointerException("A file must be set.");
         }
 
-        for (OutputMetric outputMetric : TusarModel.getAllTUSAROutput()) {
+        TusarSchemaRegistry registry = TusarSchemaRegistry.getInstance();
+
+        //Only the schemas matching the root element of the file are used
+        String[] rootElement = registry.readRootElement(inputXMLFile);
+        if (rootElement == null) {
+            return false;
+        }
+        for (Schema schema : registry.getSchemas(rootElement[0], rootElement[1])) {
+            if (isValid(schema, inputXMLFile)) {
+                return true;
+            }
+        }
+
+        for (OutputMetric outputMetric : registry.getUnresolvedOutputMetrics()) {
             if (outputMetric.validate(inputXMLFile).isEmpty()) {
                 return true;
             }
         }
         return false;
     }
+
+    private boolean isValid(Schema schema, File inputXMLFile) {
+        Validator validator = schema.newValidator();
+        validator.setErrorHandler(new ErrorHandler() {
+            public void warning(SAXParseException exception) {
+            }
+
+            public void error(SAXParseException exception) throws SAXException {
+                throw exception;
+            }
+
+            public void fatalError(SAXParseException exception) throws SAXException {
+                throw exception;
+            }
+        });
+        try {
+            //The content digest is computed with the validation read
+            MessageDigest messageDigest = TusarNotifierDigest.newDigest();
+            InputStream is = new DigestInputStream(TusarNotifierCompression.open(inputXMLFile), messageDigest);
+            try {
+                //The validator closes its source, the stream is kept open to read the content after the root element
+                StreamSource source = new StreamSource(new FilterInputStream(is) {
+                    @Override
+                    public void close() {
+                    }
+                });
+                source.setSystemId(inputXMLFile);
+                validator.validate(source);
+                TusarNotifierDigest.drain(is);
+            } finally {
+                is.close();
+            }
+            verifiedContents.add(TusarNotifierDigest.toHex(messageDigest.digest()));
+            return true;
+        } catch (SAXException se) {
+            return false;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.service;
+
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierTemplatesCache;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+
+/**
+ * The XML stack of a node, kept for the life of the node JVM and shared by all the builds running on the node.
+ * <p/>
+ * The plugin classes stay loaded on a node as long as its channel is open: the schemas of the
+ * {@link TusarSchemaRegistry}, the compiled stylesheets of the {@link TusarNotifierTemplatesCache} and the parsers
+ * and transformer factories pooled here are found and warmed by the first build, or by {@link WarmUpCallable}
+ * when the node comes online, instead of by every build.
+ * The number of pooled instances of each kind is given by the system property
+ * <code>com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierAgentService.maxPooled</code> (16 by default).
+ */
+public class TusarNotifierAgentService {
+
+    private static final int MAX_POOLED = Integer.getInteger(TusarNotifierAgentService.class.getName() + ".maxPooled", 16);
+
+    private static final TusarNotifierAgentService INSTANCE = new TusarNotifierAgentService();
+
+    private final SAXParserFactory saxParserFactory;
+
+    private final Queue<SAXParser> saxParsers = new ConcurrentLinkedQueue<SAXParser>();
+
+    private final Queue<SAXTransformerFactory> transformerFactories = new ConcurrentLinkedQueue<SAXTransformerFactory>();
+
+    private long warmUpTime = -1;
+
+    private TusarNotifierAgentService() {
+        saxParserFactory = SAXParserFactory.newInstance();
+        saxParserFactory.setNamespaceAware(true);
+    }
+
+    public static TusarNotifierAgentService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Takes a namespace aware parser from the pool, or creates it
+     *
+     * @return a parser used by the current thread only, until it is given back with {@link #release(SAXParser)}
+     * @throws SAXException the parser can't be created
+     */
+    public SAXParser borrowSAXParser() throws SAXException {
+        SAXParser parser = saxParsers.poll();
+        if (parser != null) {
+            return parser;
+        }
+        try {
+            //The factory isn't thread safe, it is only used when the pool is empty
+            synchronized (saxParserFactory) {
+                return saxParserFactory.newSAXParser();
+            }
+        } catch (ParserConfigurationException pce) {
+            throw new SAXException(pce);
+        }
+    }
+
+    /**
+     * Gives a parser back to the pool, the parser is reset and doesn't keep its handlers
+     *
+     * @param parser the parser
+     */
+    public void release(SAXParser parser) {
+        try {
+            XMLReader reader = parser.getXMLReader();
+            DefaultHandler handler = new DefaultHandler();
+            reader.setContentHandler(handler);
+            reader.setErrorHandler(handler);
+            parser.reset();
+        } catch (SAXException se) {
+            return;
+        } catch (UnsupportedOperationException uoe) {
+            //The parser can't be reset
+            return;
+        }
+        if (saxParsers.size() < MAX_POOLED) {
+            saxParsers.offer(parser);
+        }
+    }
+
+    /**
+     * Takes a transformer factory from the pool, or creates it
+     *
+     * @return a transformer factory used by the current thread only, until it is given back with
+     *         {@link #release(SAXTransformerFactory)}
+     * @throws IOException the transformer factory doesn't support SAX
+     */
+    public SAXTransformerFactory borrowTransformerFactory() throws IOException {
+        SAXTransformerFactory saxTransformerFactory = transformerFactories.poll();
+        if (saxTransformerFactory != null) {
+            return saxTransformerFactory;
+        }
+        TransformerFactory transformerFactory = TusarNotifierTemplatesCache.newTransformerFactory();
+        if (!transformerFactory.getFeature(SAXTransformerFactory.FEATURE)) {
+            throw new IOException("The transformer factory " + transformerFactory.getClass().getName() + " doesn't support SAX.");
+        }
+        return (SAXTransformerFactory) transformerFactory;
+    }
+
+    /**
+     * Gives a transformer factory back to the pool
+     *
+     * @param transformerFactory the transformer factory
+     */
+    public void release(SAXTransformerFactory transformerFactory) {
+        if (transformerFactories.size() < MAX_POOLED) {
+            transformerFactories.offer(transformerFactory);
+        }
+    }
+
+    /**
+     * Loads the TUSAR schemas and fills the pools with a first parser and a first transformer factory.
+     * Only the first call does something.
+     *
+     * @return the warm-up time of the first call in milliseconds
+     */
+    public synchronized long warmUp() {
+        if (warmUpTime >= 0) {
+            return warmUpTime;
+        }
+        long start = System.currentTimeMillis();
+        TusarSchemaRegistry.getInstance();
+        try {
+            release(borrowSAXParser());
+            release(borrowTransformerFactory());
+        } catch (SAXException se) {
+            //Created again by the first conversion, which reports the error
+        } catch (IOException ioe) {
+            //Created again by the first conversion, which reports the error
+        }
+        warmUpTime = System.currentTimeMillis() - start;
+        return warmUpTime;
+    }
+
+    /**
+     * Warms the XML stack of the node the callable is sent to
+     */
+    public static class WarmUpCallable implements hudson.remoting.Callable<Long, RuntimeException> {
+
+        public Long call() {
+            return getInstance().warmUp();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.service;
+
+import com.google.inject.Inject;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.TusarStreamWriter;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierDigest;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.*;
+import java.io.*;
+import java.util.*;
+
+
+/**
+ * Merges the TUSAR files of an output directory into a few shard files.
+ * <p/>
+ * The TUSAR files with the same root element (namespace and version) and the same category element
+ * (tests, coverage, violations or measures of a tool) are merged: a shard has the root and the category
+ * elements of its first file and the content of the category elements of all its files.
+ * The files are read and written as streams, a shard is validated before its files are deleted.
+ */
+public class TusarNotifierAggregationService implements Serializable {
+
+    public static final String SHARD_FILE_PREFIX = "TUSAR-aggregate-";
+
+    /**
+     * The size above which the files of a category are split into more shards than requested
+     */
+    private static final long MAX_SHARD_SIZE = Long.getLong(TusarNotifierAggregationService.class.getName() + ".maxShardSize", 256 * 1024 * 1024);
+
+    private TusarNotifierLog tusarNotifierLog;
+
+    @Inject
+    @SuppressWarnings("unused")
+    void load(TusarNotifierLog tusarNotifierLog) {
+        this.tusarNotifierLog = tusarNotifierLog;
+    }
+
+    /**
+     * Aggregates the TUSAR files of an output directory
+     *
+     * @param outputDirectory the output directory
+     * @param outputs         the report path of each TUSAR file name of the directory
+     * @param shards          the number of shards per category, more shards are written when they would exceed the maximum shard size
+     * @return the report paths of each TUSAR file of the directory after the aggregation, one path per line for a shard
+     */
+    public SortedMap<String, String> aggregate(File outputDirectory, SortedMap<String, String> outputs, int shards) {
+
+        SortedMap<String, String> aggregatedOutputs = new TreeMap<String, String>(outputs);
+
+        //The shards of a previous build would be recorded with the new ones
+        deleteShards(outputDirectory, outputs.keySet());
+
+        XMLInputFactory inputFactory = TusarDocumentMerger.newInputFactory();
+
+        //Groups the files by root and category elements, in file name order
+        SortedMap<String, List<File>> groups = new TreeMap<String, List<File>>();
+        for (String fileName : outputs.keySet()) {
+            File file = new File(outputDirectory, fileName);
+            String groupKey = readGroupKey(inputFactory, file);
+            if (groupKey == null) {
+                continue;
+            }
+            List<File> files = groups.get(groupKey);
+            if (files == null) {
+                files = new ArrayList<File>();
+                groups.put(groupKey, files);
+            }
+            files.add(file);
+        }
+
+        int aggregatedFiles = 0;
+        int writtenShards = 0;
+        for (Map.Entry<String, List<File>> group : groups.entrySet()) {
+            List<List<File>> partitions = partition(group.getValue(), shards);
+            String groupId = TusarNotifierDigest.digest(group.getKey()).substring(0, 8);
+            for (int i = 0; i < partitions.size(); i++) {
+                List<File> files = partitions.get(i);
+                if (files.size() < 2) {
+                    continue;
+                }
+                File shardFile = new File(outputDirectory, SHARD_FILE_PREFIX + getCategoryName(group.getKey()) + "-" + groupId + "-" + (i + 1) + ".xml");
+                if (!writeShard(inputFactory, files, shardFile)) {
+                    continue;
+                }
+                StringBuilder reports = new StringBuilder();
+                for (File file : files) {
+                    String report = aggregatedOutputs.remove(file.getName());
+                    if (reports.length() != 0) {
+                        reports.append('\n');
+                    }
+                    reports.append(report);
+                    if (!file.delete()) {
+                        tusarNotifierLog.warning("The aggregated file '" + file + "' can't be deleted.");
+                    }
+                }
+                aggregatedOutputs.put(shardFile.getName(), reports.toString());
+                aggregatedFiles += files.size();
+                writtenShards++;
+            }
+        }
+
+        if (writtenShards != 0) {
+            tusarNotifierLog.info("Aggregated " + aggregatedFiles + " TUSAR file(s) into " + writtenShards + " shard(s) in '" + outputDirectory + "'.");
+        }
+        return aggregatedOutputs;
+    }
+
+    /**
+     * Deletes the shard files of an output directory, written by the aggregation of a previous build
+     *
+     * @param outputDirectory the output directory
+     * @param fileNames       the names of the TUSAR files to keep
+     */
+    public void deleteShards(File outputDirectory, Set<String> fileNames) {
+        File[] shardFiles = outputDirectory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SHARD_FILE_PREFIX) && name.endsWith(".xml");
+            }
+        });
+        if (shardFiles == null) {
+            return;
+        }
+        for (File shardFile : shardFiles) {
+            if (!fileNames.contains(shardFile.getName()) && !shardFile.delete()) {
+                tusarNotifierLog.warning("The previous shard '" + shardFile + "' can't be deleted.");
+            }
+        }
+    }
+
+    /**
+     * Splits the files of a group into shards of about the same size, keeping the file name order
+     */
+    private List<List<File>> partition(List<File> files, int shards) {
+        long totalSize = 0;
+        for (File file : files) {
+            totalSize += file.length();
+        }
+        long shardCount = Math.max(shards, (totalSize + MAX_SHARD_SIZE - 1) / MAX_SHARD_SIZE);
+        long targetSize = Math.max(1, (totalSize + shardCount - 1) / shardCount);
+
+        List<List<File>> partitions = new ArrayList<List<File>>();
+        List<File> current = new ArrayList<File>();
+        long currentSize = 0;
+        for (File file : files) {
+            current.add(file);
+            currentSize += file.length();
+            if (currentSize >= targetSize && partitions.size() < shardCount - 1) {
+                partitions.add(current);
+                current = new ArrayList<File>();
+                currentSize = 0;
+            }
+        }
+        if (!current.isEmpty()) {
+            partitions.add(current);
+        }
+        return partitions;
+    }
+
+    /**
+     * Reads the root and the category elements of a TUSAR file
+     *
+     * @return the key of the files that can be merged with this file, null if the file can't be read
+     */
+    private String readGroupKey(XMLInputFactory inputFactory, File file) {
+        try {
+            InputStream is = new BufferedInputStream(new FileInputStream(file));
+            try {
+                XMLStreamReader reader = inputFactory.createXMLStreamReader(is);
+                try {
+                    StringBuilder key = new StringBuilder();
+                    int depth = 0;
+                    while (reader.hasNext()) {
+                        if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                            continue;
+                        }
+                        depth++;
+                        if (depth == 1) {
+                            key.append(reader.getName()).append(' ').append(reader.getAttributeValue(null, "version"));
+                        } else {
+                            key.append('\n').append(TusarDocumentMerger.getElement(reader));
+                            return key.toString();
+                        }
+                    }
+                    return null;
+                } finally {
+                    reader.close();
+                }
+            } finally {
+                is.close();
+            }
+        } catch (XMLStreamException xse) {
+            return null;
+        } catch (IOException ioe) {
+            return null;
+        }
+    }
+
+    private String getCategoryName(String groupKey) {
+        String category = groupKey.substring(groupKey.indexOf('\n') + 1, groupKey.indexOf(' ', groupKey.indexOf('\n')));
+        return QName.valueOf(category).getLocalPart().replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+
+    /**
+     * Writes a shard and validates it, the shard is deleted when it can't be written or isn't valid
+     *
+     * @return true if the shard is valid
+     */
+    private boolean writeShard(XMLInputFactory inputFactory, List<File> files, File shardFile) {
+        try {
+            TusarStreamWriter writer = new TusarStreamWriter(new FileOutputStream(shardFile));
+            try {
+                TusarDocumentMerger merger = new TusarDocumentMerger(writer);
+                for (File file : files) {
+                    InputStream is = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+                    try {
+                        XMLStreamReader reader = inputFactory.createXMLStreamReader(is);
+                        try {
+                            merger.append(reader, "file " + file);
+                        } finally {
+                            reader.close();
+                        }
+                    } finally {
+                        is.close();
+                    }
+                }
+                merger.finish();
+            } finally {
+                writer.close();
+            }
+            if (new TusarFormatValidation().isTusarFormat(shardFile)) {
+                return true;
+            }
+            tusarNotifierLog.warning("The shard '" + shardFile + "' doesn't match the TUSAR format, its " + files.size() + " file(s) are kept.");
+        } catch (XMLStreamException xse) {
+            tusarNotifierLog.warning("The shard '" + shardFile + "' can't be written, its " + files.size() + " file(s) are kept: " + xse.getMessage());
+        } catch (IOException ioe) {
+            tusarNotifierLog.warning("The shard '" + shardFile + "' can't be written, its " + files.size() + " file(s) are kept: " + ioe.getMessage());
+        }
+        if (shardFile.exists() && !shardFile.delete()) {
+            shardFile.deleteOnExit();
+        }
+        return false;
+    }
+}
@@ -25,20 +25,52 @@ package com.thalesgroup.hudson.plugins.tusarnotifier.service;
 import com.google.inject.Inject;
 import com.thalesgroup.dtkit.metrics.hudson.api.type.MetricsType;
 import com.thalesgroup.dtkit.metrics.model.InputMetric;
+import com.thalesgroup.dtkit.metrics.model.InputMetricXSL;
 import com.thalesgroup.dtkit.util.converter.ConversionException;
 import com.thalesgroup.hudson.plugins.tusarnotifier.exception.TusarNotifierException;
 import com.thalesgroup.hudson.plugins.tusarnotifier.transformer.TusarToolInfo;
-import com.thalesgroup.hudson.plugins.tusarnotifier.types.CustomInputMetric;
 import com.thalesgroup.hudson.plugins.tusarnotifier.types.CustomType;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.CustomXSLConverter;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.PassthroughInputMetric;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierConversionCache;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierDigest;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierErrorCollector;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierFileAttributes;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierFileTransfer;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierTemplatesCache;
 
+import javax.xml.transform.TransformerConfigurationException;
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Gregory Boissinot
  */
 public class TusarNotifierConversionService implements Serializable {
 
+    private static final String TUSAR_FILE_POSTFIX = ".xml";
+
+    private static final String TUSAR_FILE_PREFIX = "TUSAR-";
+
+    /**
+     * Number of hexadecimal digits of the report path hash in the TUSAR file names (64 bits)
+     */
+    private static final int PATH_HASH_LENGTH = 16;
+
+    /**
+     * The digest of the converter stylesheets, by stylesheet location and modification date
+     */
+    private static final Map<String, String> converterDigests = new ConcurrentHashMap<String, String>();
+
+    private final AtomicInteger cacheHits = new AtomicInteger();
+
+    private final AtomicInteger cacheMisses = new AtomicInteger();
+
     private TusarNotifierLog xUnitLog;
 
     @Inject
@@ -48,21 +80,30 @@ public class TusarNotifierConversionService implements Serializable {
     }
 
     /**
-     * Prepares the conversion by adding specific behavior for the CustomType
+     * Prepares the conversion by adding specific behavior for the CustomType.
+     * The custom stylesheet is resolved and compiled once for the tool, before its first file is converted;
+     * the next calls reuse the stylesheet of the tool.
      *
      * @param tusarToolInfo the tusarToolInfo info wrapper object
      * @param workspace     the current workspace
      * @throws com.thalesgroup.hudson.plugins.tusarnotifier.exception.TusarNotifierException
      *          an XUnitException is thrown if there is a preparation error.
      */
-    private void prepareConversion(TusarToolInfo tusarToolInfo, File workspace) throws TusarNotifierException {
+    public void prepareConversion(TusarToolInfo tusarToolInfo, File workspace) throws TusarNotifierException {
         MetricsType metricsType = tusarToolInfo.getMetricsType();
-        if (metricsType instanceof CustomType) {
+        if (metricsType instanceof CustomType && tusarToolInfo.getCusXSLFile() == null) {
             String xsl = ((CustomType) metricsType).getCustomXSL();
             File xslFile = new File(workspace, xsl);
             if (!xslFile.exists()) {
                 throw new TusarNotifierException("The input xsl '" + xsl + "' relative to the workspace '" + workspace + "'doesn't exist.");
             }
+            long start = System.currentTimeMillis();
+            try {
+                TusarNotifierTemplatesCache.getInstance().getTemplates(xslFile);
+            } catch (TransformerConfigurationException tce) {
+                throw new TusarNotifierException("The input xsl '" + xsl + "' can't be compiled: " + tce.getMessage(), tce);
+            }
+            xUnitLog.info("The input xsl '" + xsl + "' is ready (" + (System.currentTimeMillis() - start) + " ms).");
             tusarToolInfo.setCusXSLFile(xslFile);
         }
     }
@@ -89,21 +130,288 @@ public class TusarNotifierConversionService implements Serializable {
 
         InputMetric inputMetric = metricsType.getInputMetric();
 
-        final String TUSAR_FILE_POSTFIX = ".xml";
-        final String TUSAR_FILE_PREFIX = "TUSAR-";
-        File junitTargetFile = new File(outputDirectory, TUSAR_FILE_PREFIX + inputFile.hashCode() + TUSAR_FILE_POSTFIX);
+        File junitTargetFile = getTargetFile(tusarToolInfo, inputFile, workspace, outputDirectory);
         xUnitLog.info("Converting '" + inputFile + "' .");
 
         try {
-            //Set the XSL for custom type
-            if (metricsType instanceof CustomType) {
-                ((CustomInputMetric) inputMetric).setCustomXSLFile(tusarToolInfo.getCusXSLFile());
+            if (inputMetric instanceof PassthroughInputMetric) {
+                //The previous output is unlinked before the input is materialized
+                TusarNotifierFileTransfer.Strategy strategy = ((PassthroughInputMetric) inputMetric).transfer(inputFile, junitTargetFile);
+                xUnitLog.info("'" + inputFile + "' materialized with a " + strategy + ".");
+            } else if (metricsType instanceof CustomType) {
+                //The custom input metric is shared by the tools running concurrently, the stylesheet of the
+                //tool is given to the converter, which writes aside and replaces the previous output
+                CustomXSLConverter.convert(tusarToolInfo.getCusXSLFile(), inputFile, junitTargetFile, null);
+            } else {
+                //The dtkit converters write their output in place: the output is written aside and replaces
+                //the previous output, which may share its content with a cache entry or a report
+                File tmpTargetFile = TusarNotifierFileTransfer.getTempFile(junitTargetFile);
+                try {
+                    inputMetric.convert(inputFile, tmpTargetFile);
+                } catch (ConversionException ce) {
+                    tmpTargetFile.delete();
+                    throw ce;
+                }
+                TusarNotifierFileTransfer.replace(tmpTargetFile, junitTargetFile);
             }
-            inputMetric.convert(inputFile, junitTargetFile);
         } catch (ConversionException ce) {
             throw new TusarNotifierException("Conversion error", ce);
+        } catch (IOException ioe) {
+            throw new TusarNotifierException("Conversion error", ioe);
         }
 
         return junitTargetFile;
     }
+
+    /**
+     * Gets the single pass pipeline of a tool
+     *
+     * @param tusarToolInfo the tusar tool info wrapper object
+     * @return the pipeline, or null if the tool reports must be validated and converted in separated steps
+     */
+    public TusarConversionPipeline getPipeline(TusarToolInfo tusarToolInfo) {
+        MetricsType metricsType = tusarToolInfo.getMetricsType();
+        if (metricsType instanceof CustomType) {
+            return null;
+        }
+        return TusarConversionPipeline.getPipeline(metricsType.getInputMetric());
+    }
+
+    /**
+     * Validates, converts and validates the converted content of an input file in a single read of the file
+     *
+     * @param tusarToolInfo   the tusar tool info wrapper object
+     * @param pipeline        the pipeline of the tool
+     * @param inputFile       the input file to be converted
+     * @param workspace       the workspace
+     * @param outputDirectory the output parent directory that contains the TUSAR output file
+     * @return the converted file, or null if the input file or the converted content are not valid
+     * @throws com.thalesgroup.hudson.plugins.tusarnotifier.exception.TusarNotifierException
+     *          an XUnitException is thrown if there is a conversion error.
+     */
+    public File convertInSinglePass(TusarToolInfo tusarToolInfo, TusarConversionPipeline pipeline, File inputFile, File workspace, File outputDirectory) throws TusarNotifierException {
+
+        File tusarTargetFile = getTargetFile(tusarToolInfo, inputFile, workspace, outputDirectory);
+        xUnitLog.info("Converting '" + inputFile + "' in a single pass.");
+
+        TusarConversionPipeline.Result result;
+        try {
+            File sidecarOutputDirectory = tusarToolInfo.isValidationErrorsFiles() ? outputDirectory : null;
+            result = pipeline.convert(inputFile, tusarTargetFile,
+                    TusarNotifierErrorCollector.newInstance(sidecarOutputDirectory, inputFile, "input"),
+                    TusarNotifierErrorCollector.newInstance(sidecarOutputDirectory, inputFile, "output"));
+        } catch (IOException ioe) {
+            throw new TusarNotifierException("Conversion error", ioe);
+        }
+
+        if (!result.isInputValid()) {
+            xUnitLog.warning("The file '" + inputFile + "' is an invalid file.");
+            xUnitLog.validationWarnings(result.getInputErrors());
+            return null;
+        }
+
+        if (!result.isOutputValid()) {
+            xUnitLog.error("The converted file for the input file '" + inputFile + "' doesn't match the TUSAR format");
+            xUnitLog.validationErrors(result.getOutputErrors());
+            return null;
+        }
+
+        return tusarTargetFile;
+    }
+
+    /**
+     * Gets the streaming converter of a tool
+     *
+     * @param tusarToolInfo the tusar tool info wrapper object
+     * @return the converter, or null if the tool reports can only be converted whole
+     */
+    public TusarStreamingConverter getStreamingConverter(TusarToolInfo tusarToolInfo) {
+        MetricsType metricsType = tusarToolInfo.getMetricsType();
+        if (metricsType instanceof CustomType) {
+            return null;
+        }
+        return TusarStreamingConverter.getConverter(metricsType);
+    }
+
+    /**
+     * Converts an input file fragment by fragment, the converted content must match the TUSAR format
+     *
+     * @param tusarToolInfo      the tusar tool info wrapper object
+     * @param streamingConverter the streaming converter of the tool
+     * @param inputFile          the input file to be converted
+     * @param workspace          the workspace
+     * @param outputDirectory    the output parent directory that contains the TUSAR output file
+     * @return the converted file, or null if the input file can't be converted by fragments
+     * @throws com.thalesgroup.hudson.plugins.tusarnotifier.exception.TusarNotifierException
+     *          an XUnitException is thrown if there is a conversion error.
+     */
+    public File convertByFragments(TusarToolInfo tusarToolInfo, TusarStreamingConverter streamingConverter, File inputFile, File workspace, File outputDirectory) throws TusarNotifierException {
+
+        File tusarTargetFile = getTargetFile(tusarToolInfo, inputFile, workspace, outputDirectory);
+        xUnitLog.info("Converting '" + inputFile + "' by fragments.");
+
+        try {
+            if (!streamingConverter.convert(inputFile, tusarTargetFile)) {
+                return null;
+            }
+        } catch (IOException ioe) {
+            throw new TusarNotifierException("Conversion error", ioe);
+        }
+
+        //The fragments of a report whose stylesheet needs the whole report don't merge into a TUSAR file
+        if (!new TusarFormatValidation().isTusarFormat(tusarTargetFile)) {
+            if (!tusarTargetFile.delete()) {
+                tusarTargetFile.deleteOnExit();
+            }
+            return null;
+        }
+        return tusarTargetFile;
+    }
+
+    /**
+     * Gets the TUSAR output file of an input file.
+     * The name is made of the tool id and of a hash of the input file path relative to the workspace:
+     * it is the same on every node and for every build, and two reports never share a name, even when they are
+     * converted by two tools of the same type.
+     *
+     * @param tusarToolInfo   the tusar tool info wrapper object
+     * @param inputFile       the input file
+     * @param workspace       the workspace
+     * @param outputDirectory the output parent directory that contains the TUSAR output file
+     * @return the TUSAR output file
+     */
+    public File getTargetFile(TusarToolInfo tusarToolInfo, File inputFile, File workspace, File outputDirectory) {
+        String pathHash = TusarNotifierDigest.digest(getRelativePath(inputFile, workspace)).substring(0, PATH_HASH_LENGTH);
+        return new File(outputDirectory, TUSAR_FILE_PREFIX + tusarToolInfo.getToolId() + "-" + pathHash + TUSAR_FILE_POSTFIX);
+    }
+
+    /**
+     * Gets the path of an input file relative to the workspace, with '/' separators
+     *
+     * @param inputFile the input file
+     * @param workspace the workspace
+     * @return the relative path, or the absolute path when the file is outside the workspace
+     */
+    public static String getRelativePath(File inputFile, File workspace) {
+        String path = inputFile.getAbsolutePath();
+        String workspacePath = workspace.getAbsolutePath();
+        if (!workspacePath.endsWith(File.separator)) {
+            workspacePath = workspacePath + File.separator;
+        }
+        if (path.startsWith(workspacePath)) {
+            path = path.substring(workspacePath.length());
+        }
+        return path.replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Computes the key of a conversion in the node conversion cache, from the tool, the converter version
+     * and the input content. The input content isn't read again when the input attributes haven't changed
+     * since the last conversion key of the file.
+     *
+     * @param tusarToolInfo the tusar tool info wrapper object
+     * @param inputFile     the input file to be converted
+     * @param attributes    the attributes of the input file
+     * @param workspace     the workspace
+     * @return the key, or null if the conversion cache is disabled or not used by the tool
+     * @throws TusarNotifierException the input file or the converter can't be read
+     */
+    public String getConversionKey(TusarToolInfo tusarToolInfo, File inputFile, TusarNotifierFileAttributes attributes, File workspace) throws TusarNotifierException {
+
+        if (!TusarNotifierConversionCache.getInstance().isEnabled()) {
+            return null;
+        }
+
+        MetricsType metricsType = tusarToolInfo.getMetricsType();
+        InputMetric inputMetric = metricsType.getInputMetric();
+
+        //A TUSAR report is materialized without copy, the cache would add a read and a copy of the report
+        if (inputMetric instanceof PassthroughInputMetric) {
+            return null;
+        }
+
+        prepareConversion(tusarToolInfo, workspace);
+
+        try {
+            StringBuilder key = new StringBuilder();
+            key.append(metricsType.getClass().getName()).append('|');
+            key.append(inputMetric.getClass().getName()).append('|');
+            key.append(inputMetric.getToolVersion()).append('|');
+            if (metricsType instanceof CustomType) {
+                key.append(getConverterDigest(tusarToolInfo.getCusXSLFile().toURI().toURL()));
+            } else if (inputMetric instanceof InputMetricXSL) {
+                InputMetricXSL inputMetricXSL = (InputMetricXSL) inputMetric;
+                URL xslURL = inputMetricXSL.getXslFile() != null
+                        ? inputMetricXSL.getXslFile().toURI().toURL()
+                        : inputMetricXSL.getXslResourceClass().getResource(inputMetricXSL.getXslName());
+                key.append(getConverterDigest(xslURL));
+            }
+            key.append('|').append(TusarNotifierDigest.digest(inputFile, attributes));
+            return TusarNotifierDigest.digest(key.toString());
+        } catch (IOException ioe) {
+            throw new TusarNotifierException("Can't compute the conversion key of '" + inputFile + "'", ioe);
+        }
+    }
+
+    private String getConverterDigest(URL xslURL) throws IOException {
+        if (xslURL == null) {
+            return "";
+        }
+        long lastModified = xslURL.openConnection().getLastModified();
+        String location = xslURL.toExternalForm() + "@" + lastModified;
+        String digest = converterDigests.get(location);
+        if (digest == null) {
+            digest = TusarNotifierDigest.digest(xslURL.openStream());
+            converterDigests.put(location, digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Materializes the TUSAR output of an input file from the node conversion cache.
+     * The restored output is checked against the TUSAR format, an invalid entry is removed from the cache.
+     *
+     * @param conversionKey   the conversion key
+     * @param tusarToolInfo   the tusar tool info wrapper object
+     * @param inputFile       the input file
+     * @param workspace       the workspace
+     * @param outputDirectory the output parent directory that contains the TUSAR output file
+     * @return the TUSAR output file, null if the conversion is not in the cache
+     */
+    public File restoreConversion(String conversionKey, TusarToolInfo tusarToolInfo, File inputFile, File workspace, File outputDirectory) {
+        File tusarTargetFile = getTargetFile(tusarToolInfo, inputFile, workspace, outputDirectory);
+        TusarNotifierConversionCache conversionCache = TusarNotifierConversionCache.getInstance();
+        if (conversionCache.restore(conversionKey, tusarTargetFile)) {
+            if (!new TusarFormatValidation().isVerifiedTusarFormat(tusarTargetFile)) {
+                xUnitLog.warning("The cached conversion of '" + inputFile + "' doesn't match the TUSAR format, the file is converted again.");
+                conversionCache.remove(conversionKey);
+                tusarTargetFile.delete();
+                cacheMisses.incrementAndGet();
+                return null;
+            }
+            cacheHits.incrementAndGet();
+            xUnitLog.info("'" + inputFile + "' already converted, the TUSAR file has been restored from the conversion cache.");
+            return tusarTargetFile;
+        }
+        cacheMisses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores a validated TUSAR output in the node conversion cache
+     *
+     * @param conversionKey   the conversion key
+     * @param tusarTargetFile the TUSAR output file
+     */
+    public void storeConversion(String conversionKey, File tusarTargetFile) {
+        TusarNotifierConversionCache.getInstance().store(conversionKey, tusarTargetFile);
+    }
+
+    public int getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public int getCacheMisses() {
+        return cacheMisses.get();
+    }
 }
@@ -23,17 +23,43 @@
 package com.thalesgroup.hudson.plugins.tusarnotifier.service;
 
 import com.google.inject.Inject;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierErrorCollector;
 import hudson.model.BuildListener;
 
+import java.io.File;
+import java.io.PrintStream;
 import java.io.Serializable;
+import java.util.*;
 
 /**
+ * The messages are buffered and written to the build log in chunks, when the buffer is full or after a short delay,
+ * so that a remote node doesn't make a remoting call per message. The callables flush the log before returning.
+ *
  * @author Gregory Boissinot
  */
 public class TusarNotifierLog implements Serializable {
 
+    private static final int BUFFER_SIZE = Integer.getInteger(TusarNotifierLog.class.getName() + ".bufferSize", 16 * 1024);
+
+    private static final long FLUSH_DELAY = Long.getLong(TusarNotifierLog.class.getName() + ".flushDelay", 1000);
+
+    /**
+     * The maximum number of distinct validation errors logged for a file
+     */
+    private static final int MAX_VALIDATION_ERRORS = Integer.getInteger(TusarNotifierLog.class.getName() + ".maxValidationErrors", 20);
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private static Timer flushTimer;
+
     private BuildListener buildListener;
 
+    private transient ThreadLocal<List<String>> capturedMessages;
+
+    private transient StringBuilder buffer;
+
+    private transient TimerTask flushTask;
+
     @Inject
     @SuppressWarnings("unused")
     void set(BuildListener buildListener) {
@@ -46,7 +72,7 @@ public class TusarNotifierLog implements Serializable {
      * @param message The message to be outputted
      */
     public void info(String message) {
-        buildListener.getLogger().println("[TusarNotifier] [INFO] - " + message);
+        print("[TusarNotifier] [INFO] - " + message);
     }
 
 
@@ -56,7 +82,7 @@ public class TusarNotifierLog implements Serializable {
      * @param message The message to be outputted
      */
     public void error(String message) {
-        buildListener.getLogger().println("[TusarNotifier] [ERROR] - " + message);
+        print("[TusarNotifier] [ERROR] - " + message);
     }
 
     /**
@@ -65,7 +91,167 @@ public class TusarNotifierLog implements Serializable {
      * @param message The message to be outputted
      */
     public void warning(String message) {
-        buildListener.getLogger().println("[TusarNotifier] [WARNING] - " + message);
+        print("[TusarNotifier] [WARNING] - " + message);
+    }
+
+    /**
+     * Log validation errors as warnings, the similar errors are collapsed and the number of errors is capped
+     *
+     * @param validationErrors the validation errors
+     */
+    public void validationWarnings(Collection<?> validationErrors) {
+        TusarNotifierErrorCollector errors = new TusarNotifierErrorCollector();
+        errors.addAll(validationErrors);
+        validationWarnings(errors);
+    }
+
+    /**
+     * Log collected validation errors as warnings, the similar errors are collapsed and the number of errors is capped
+     *
+     * @param validationErrors the collected validation errors
+     */
+    public void validationWarnings(TusarNotifierErrorCollector validationErrors) {
+        for (String message : collapse(validationErrors)) {
+            warning(message);
+        }
+    }
+
+    /**
+     * Log validation errors as errors, the similar errors are collapsed and the number of errors is capped
+     *
+     * @param validationErrors the validation errors
+     */
+    public void validationErrors(Collection<?> validationErrors) {
+        TusarNotifierErrorCollector errors = new TusarNotifierErrorCollector();
+        errors.addAll(validationErrors);
+        validationErrors(errors);
+    }
+
+    /**
+     * Log collected validation errors as errors, the similar errors are collapsed and the number of errors is capped
+     *
+     * @param validationErrors the collected validation errors
+     */
+    public void validationErrors(TusarNotifierErrorCollector validationErrors) {
+        for (String message : collapse(validationErrors)) {
+            error(message);
+        }
+    }
+
+    /**
+     * Collapses the errors differing only by their numbers (as their line and column) and keeps
+     * the first errors of the list
+     */
+    private List<String> collapse(TusarNotifierErrorCollector validationErrors) {
+        List<String> messages = new ArrayList<String>();
+        int hidden = validationErrors.getOtherCount();
+        for (Map.Entry<String, Integer> typeCount : validationErrors.getTypeCounts().entrySet()) {
+            int count = typeCount.getValue();
+            if (messages.size() == MAX_VALIDATION_ERRORS) {
+                hidden += count;
+                continue;
+            }
+            messages.add(count == 1 ? typeCount.getKey() : typeCount.getKey() + " (and " + (count - 1) + " similar error(s))");
+        }
+        if (hidden != 0) {
+            messages.add(hidden + " more error(s) not shown.");
+        }
+        File sidecarFile = validationErrors.getSidecarFile();
+        if (sidecarFile != null) {
+            messages.add("The " + validationErrors.getCount() + " error(s) are listed in '" + sidecarFile + "'.");
+        }
+        return messages;
+    }
+
+    /**
+     * Starts capturing the messages logged by the current thread instead of printing them.
+     * The captured messages are retrieved with {@link #stopCapture()}.
+     */
+    public void startCapture() {
+        getCapturedMessages().set(new ArrayList<String>());
+    }
+
+    /**
+     * Stops capturing the messages logged by the current thread
+     *
+     * @return the messages logged since the last call to {@link #startCapture()}
+     */
+    public List<String> stopCapture() {
+        List<String> messages = getCapturedMessages().get();
+        getCapturedMessages().remove();
+        return messages == null ? new ArrayList<String>() : messages;
+    }
+
+    /**
+     * Prints messages previously captured
+     *
+     * @param messages the captured messages
+     */
+    public void flush(List<String> messages) {
+        for (String message : messages) {
+            print(message);
+        }
+    }
+
+    /**
+     * Writes the buffered messages to the build log
+     */
+    public synchronized void flush() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        if (buffer != null && buffer.length() != 0) {
+            PrintStream logger = buildListener.getLogger();
+            logger.print(buffer);
+            logger.flush();
+            buffer.setLength(0);
+        }
+    }
+
+    private void print(String line) {
+        List<String> messages = getCapturedMessages().get();
+        if (messages != null) {
+            messages.add(line);
+        } else {
+            append(line);
+        }
+    }
+
+    private synchronized void append(String line) {
+        if (buffer == null) {
+            buffer = new StringBuilder(BUFFER_SIZE);
+        }
+        buffer.append(line).append(LINE_SEPARATOR);
+        if (buffer.length() >= BUFFER_SIZE) {
+            flush();
+        } else if (flushTask == null) {
+            flushTask = new TimerTask() {
+                @Override
+                public void run() {
+                    try {
+                        flush();
+                    } catch (RuntimeException re) {
+                        //The timer is shared by all the builds, the messages are written by the next flush
+                    }
+                }
+            };
+            getFlushTimer().schedule(flushTask, FLUSH_DELAY);
+        }
+    }
+
+    private static synchronized Timer getFlushTimer() {
+        if (flushTimer == null) {
+            flushTimer = new Timer("TusarNotifier log flusher", true);
+        }
+        return flushTimer;
+    }
+
+    private synchronized ThreadLocal<List<String>> getCapturedMessages() {
+        if (capturedMessages == null) {
+            capturedMessages = new ThreadLocal<List<String>>();
+        }
+        return capturedMessages;
     }
 
 }
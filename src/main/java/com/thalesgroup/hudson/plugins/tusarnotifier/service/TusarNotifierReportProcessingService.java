@@ -23,17 +23,19 @@
 package com.thalesgroup.hudson.plugins.tusarnotifier.service;
 
 import com.google.inject.Inject;
-import com.thalesgroup.dtkit.metrics.hudson.api.type.*;
+import com.thalesgroup.dtkit.metrics.hudson.api.type.MetricsType;
 import com.thalesgroup.hudson.plugins.tusarnotifier.transformer.TusarToolInfo;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierFileAttributes;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierThreadFactory;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierWorkspaceScanner;
 import hudson.Util;
 import org.apache.tools.ant.DirectoryScanner;
 import org.apache.tools.ant.types.FileSet;
 
 import java.io.File;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
 
 
 /**
@@ -41,6 +43,11 @@ import java.util.List;
  */
 public class TusarNotifierReportProcessingService implements Serializable {
 
+    /**
+     * The number of files whose attributes are read by a task of the attribute pass
+     */
+    private static final int ATTRIBUTES_BATCH_SIZE = 256;
+
     private TusarNotifierLog xUnitLog;
 
     @Inject
@@ -69,60 +76,131 @@ public class TusarNotifierReportProcessingService implements Serializable {
      */
     public List<String> findReports(TusarToolInfo tusarToolInfo, File parentPath, String pattern) {
 
-        MetricsType metricsType = tusarToolInfo.getMetricsType();
-        String toolName = null;
-        if (metricsType instanceof TestType) {
-            toolName = ((TestType) metricsType).getDescriptor().getDisplayName();
-        }
-        if (metricsType instanceof CoverageType) {
-            toolName = ((CoverageType) metricsType).getDescriptor().getDisplayName();
-        }
-        if (metricsType instanceof ViolationsType) {
-            toolName = ((ViolationsType) metricsType).getDescriptor().getDisplayName();
-        }
-        if (metricsType instanceof MeasureType) {
-            toolName = ((MeasureType) metricsType).getDescriptor().getDisplayName();
+        FileSet fs = Util.createFileSet(parentPath, pattern);
+        DirectoryScanner ds = fs.getDirectoryScanner();
+        List<String> xunitFiles = Arrays.asList(ds.getIncludedFiles());
+
+        logFoundReports(tusarToolInfo, parentPath, pattern, xunitFiles);
+        return xunitFiles;
+    }
+
+    /**
+     * Gets the reports of several tools with a single walk of the given parent path.
+     *
+     * @param tusarToolInfos the tusar tool wrappers
+     * @param parentPath     parent
+     * @return for each tool, in the same order, the reports matching its pattern
+     */
+    public List<List<String>> findReports(List<TusarToolInfo> tusarToolInfos, File parentPath) {
+        List<String> patterns = new ArrayList<String>(tusarToolInfos.size());
+        for (TusarToolInfo tusarToolInfo : tusarToolInfos) {
+            patterns.add(tusarToolInfo.getExpandedPattern());
         }
+        return new TusarNotifierWorkspaceScanner(patterns).scan(parentPath);
+    }
 
+    /**
+     * Logs the number of reports found for a tool
+     *
+     * @param tusarToolInfo the tusar Tool tool wrapper
+     * @param parentPath    parent
+     * @param pattern       pattern to search files
+     * @param xunitFiles    the found reports
+     */
+    public void logFoundReports(TusarToolInfo tusarToolInfo, File parentPath, String pattern, List<String> xunitFiles) {
 
-        FileSet fs = Util.createFileSet(parentPath, pattern);
-        DirectoryScanner ds = fs.getDirectoryScanner();
-        String[] xunitFiles = ds.getIncludedFiles();
+        String toolName = tusarToolInfo.getToolName();
 
-        if (xunitFiles.length == 0) {
+        if (xunitFiles.size() == 0) {
             String msg = "[" + toolName + "] - No test report file(s) were found with the pattern '"
                     + pattern + "' relative to '" + parentPath + "' for the testing framework '" + toolName + "'."
                     + "  Did you enter a pattern relative to the correct directory?"
                     + "  Did you generate the result report(s) for '" + toolName + "'?";
             xUnitLog.error(msg);
         } else {
-            String msg = "[" + toolName + "] - " + xunitFiles.length + " test report file(s) were found with the pattern '"
+            String msg = "[" + toolName + "] - " + xunitFiles.size() + " test report file(s) were found with the pattern '"
                     + pattern + "' relative to '" + parentPath + "' for the testing framework '" + toolName + "'.";
             xUnitLog.info(msg);
         }
-        return Arrays.asList(xunitFiles);
     }
 
 
+    /**
+     * Reads the attributes of the reports, each report is read once. The reads are done by a pool of workers,
+     * by batches of reports, so that the latency of a network file system is not paid once per report.
+     *
+     * @param workspace the root location of the file list
+     * @param files     the file list
+     * @param workers   the maximum number of workers
+     * @return the attributes of each file of the list
+     * @throws InterruptedException the build has been aborted
+     */
+    public Map<String, TusarNotifierFileAttributes> readAttributes(final File workspace, final List<String> files, int workers) throws InterruptedException {
+
+        final TusarNotifierFileAttributes[] attributes = new TusarNotifierFileAttributes[files.size()];
+        int batches = (files.size() + ATTRIBUTES_BATCH_SIZE - 1) / ATTRIBUTES_BATCH_SIZE;
+        if (workers <= 1 || batches <= 1) {
+            for (int i = 0; i < files.size(); i++) {
+                attributes[i] = TusarNotifierFileAttributes.read(getCurrentReport(workspace, files.get(i)));
+            }
+        } else {
+            ExecutorService executorService = Executors.newFixedThreadPool(Math.min(workers, batches), new TusarNotifierThreadFactory("TusarNotifier attributes worker"));
+            try {
+                List<Future<?>> futures = new ArrayList<Future<?>>(batches);
+                for (int batch = 0; batch < batches; batch++) {
+                    final int from = batch * ATTRIBUTES_BATCH_SIZE;
+                    final int to = Math.min(files.size(), from + ATTRIBUTES_BATCH_SIZE);
+                    futures.add(executorService.submit(new Runnable() {
+                        public void run() {
+                            for (int i = from; i < to; i++) {
+                                attributes[i] = TusarNotifierFileAttributes.read(getCurrentReport(workspace, files.get(i)));
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException ee) {
+                        Throwable cause = ee.getCause();
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        }
+                        throw new RuntimeException(cause);
+                    }
+                }
+            } finally {
+                executorService.shutdownNow();
+            }
+        }
+
+        Map<String, TusarNotifierFileAttributes> attributesByFile = new HashMap<String, TusarNotifierFileAttributes>(files.size() * 2);
+        for (int i = 0; i < files.size(); i++) {
+            attributesByFile.put(files.get(i), attributes[i]);
+        }
+        return attributesByFile;
+    }
+
     /**
      * Checks if all the finds files are new file
      *
      * @param tusarToolInfo the wrapped object
      * @param files         the file list
      * @param workspace     the root location of the file list
+     * @param attributes    the attributes of the files
      * @return true if all files are new, false otherwise
      */
-    public boolean checkIfFindsFilesNewFiles(TusarToolInfo tusarToolInfo, List<String> files, File workspace) {
+    public boolean checkIfFindsFilesNewFiles(TusarToolInfo tusarToolInfo, List<String> files, File workspace, Map<String, TusarNotifierFileAttributes> attributes) {
 
         MetricsType metricsType = tusarToolInfo.getMetricsType();
 
         if (metricsType.isFaildedIfNotNew()) {
-            ArrayList<File> oldResults = new ArrayList<File>();
+            Map<File, Long> oldResults = new LinkedHashMap<File, Long>();
             for (String value : files) {
-                File reportFile = new File(workspace, value);
+                long lastModified = attributes.get(value).getLastModified();
                 // if the file was not updated this build, that is a problem
-                if (tusarToolInfo.getBuildTime() - 3000 > reportFile.lastModified()) {
-                    oldResults.add(reportFile);
+                if (tusarToolInfo.getBuildTime() - 3000 > lastModified) {
+                    oldResults.put(new File(workspace, value), lastModified);
                 }
             }
 
@@ -138,8 +216,8 @@ public class TusarNotifierReportProcessingService implements Serializable {
                 }
 
                 String msg = "Test reports were found but not all of them are new. Did all the tests run?\n";
-                for (File f : oldResults) {
-                    msg += String.format("  * %s is %s old\n", f, Util.getTimeSpanString(tusarToolInfo.getBuildTime() - f.lastModified()));
+                for (Map.Entry<File, Long> oldResult : oldResults.entrySet()) {
+                    msg += String.format("  * %s is %s old\n", oldResult.getKey(), Util.getTimeSpanString(tusarToolInfo.getBuildTime() - oldResult.getValue()));
                 }
                 xUnitLog.error(msg);
                 return false;
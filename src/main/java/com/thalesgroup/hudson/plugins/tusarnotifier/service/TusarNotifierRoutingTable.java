@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.service;
+
+import com.thalesgroup.dtkit.metrics.model.InputMetric;
+import com.thalesgroup.dtkit.metrics.model.InputMetricXSL;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.CustomInputMetric;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.PassthroughInputMetric;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Routes the reports of an auto-detected type to the tools of its category.
+ * <p/>
+ * The table is built on the master with the root elements declared by the input schemas of the tools;
+ * a report is routed from its root element, and it is only validated against the schemas of the tools
+ * sharing its root element.
+ * The TUSAR reports are routed to the TUSAR tool of the category.
+ */
+public class TusarNotifierRoutingTable implements Serializable {
+
+    private final List<Set<String>> rootElements = new ArrayList<Set<String>>();
+
+    private int tusarTool = -1;
+
+    /**
+     * Adds a tool to the table, a tool whose reports can't be recognized from their root element isn't added
+     *
+     * @param inputMetric the input metric of the tool
+     * @return the index of the tool in the table, -1 if the tool hasn't been added
+     */
+    public int addTool(InputMetric inputMetric) {
+        if (inputMetric instanceof PassthroughInputMetric) {
+            if (tusarTool != -1) {
+                return -1;
+            }
+            tusarTool = rootElements.size();
+            rootElements.add(new HashSet<String>());
+            return tusarTool;
+        }
+        if (!(inputMetric instanceof InputMetricXSL) || inputMetric instanceof CustomInputMetric) {
+            return -1;
+        }
+
+        InputMetricXSL inputMetricXSL = (InputMetricXSL) inputMetric;
+        String[] inputXsdNameList = inputMetricXSL.getInputXsdNameList();
+        if (inputXsdNameList == null) {
+            return -1;
+        }
+        Set<String> toolRootElements = new HashSet<String>();
+        for (String inputXsdName : inputXsdNameList) {
+            URL xsdURL = TusarConversionPipeline.getResource(inputMetricXSL, inputXsdName);
+            if (xsdURL == null) {
+                return -1;
+            }
+            try {
+                readGlobalElements(xsdURL, toolRootElements);
+            } catch (IOException ioe) {
+                return -1;
+            } catch (XMLStreamException xse) {
+                return -1;
+            }
+        }
+        if (toolRootElements.isEmpty()) {
+            return -1;
+        }
+        rootElements.add(toolRootElements);
+        return rootElements.size() - 1;
+    }
+
+    /**
+     * Finds the tools recognizing a report, from the root element of the report.
+     * Several tools may declare the same root element, such as the test tools sharing the JUnit format:
+     * they are all candidates, in the order they have been added.
+     *
+     * @param file the report, plain or gzip compressed
+     * @return the indexes of the candidate tools in the table, empty if no tool recognizes the report
+     */
+    public List<Integer> route(File file) {
+        List<Integer> tools = new ArrayList<Integer>();
+        TusarSchemaRegistry registry = TusarSchemaRegistry.getInstance();
+        String[] rootElement = registry.readRootElement(file);
+        if (rootElement == null) {
+            return tools;
+        }
+        if (registry.isTusarNamespace(rootElement[0])) {
+            if (tusarTool != -1) {
+                tools.add(tusarTool);
+            }
+            return tools;
+        }
+        String name = toName(rootElement[0], rootElement[2]);
+        for (int i = 0; i < rootElements.size(); i++) {
+            if (rootElements.get(i).contains(name)) {
+                tools.add(i);
+            }
+        }
+        return tools;
+    }
+
+    private void readGlobalElements(URL xsdURL, Set<String> names) throws IOException, XMLStreamException {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        InputStream is = xsdURL.openStream();
+        try {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(is);
+            try {
+                String targetNamespace = "";
+                int depth = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                    } else if (event == XMLStreamConstants.START_ELEMENT) {
+                        depth++;
+                        if (depth == 1) {
+                            String namespace = reader.getAttributeValue(null, "targetNamespace");
+                            targetNamespace = namespace == null ? "" : namespace;
+                        } else if (depth == 2 && XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(reader.getNamespaceURI())
+                                && "element".equals(reader.getLocalName())) {
+                            String name = reader.getAttributeValue(null, "name");
+                            if (name != null) {
+                                names.add(toName(targetNamespace, name));
+                            }
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            is.close();
+        }
+    }
+
+    private static String toName(String namespace, String localName) {
+        return "{" + namespace + "}" + localName;
+    }
+}
@@ -24,10 +24,12 @@ package com.thalesgroup.hudson.plugins.tusarnotifier.service;
 
 import com.google.inject.Inject;
 import com.thalesgroup.dtkit.metrics.model.InputMetric;
-import com.thalesgroup.dtkit.util.validator.ValidationError;
 import com.thalesgroup.dtkit.util.validator.ValidationException;
 import com.thalesgroup.hudson.plugins.tusarnotifier.exception.TusarNotifierException;
 import com.thalesgroup.hudson.plugins.tusarnotifier.transformer.TusarToolInfo;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.PassthroughInputMetric;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierErrorCollector;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierFileAttributes;
 
 import java.io.File;
 import java.io.Serializable;
@@ -56,6 +58,16 @@ public class TusarNotifierValidationService implements Serializable {
         return inputFile.length() != 0;
     }
 
+    /**
+     * Checks if the current input file is not empty
+     *
+     * @param attributes the attributes of the input file
+     * @return true if not empty, false otherwise
+     */
+    public boolean checkFileIsNotEmpty(TusarNotifierFileAttributes attributes) {
+        return attributes.getLength() != 0;
+    }
+
     /**
      * Validates an input file
      *
@@ -71,13 +83,23 @@ public class TusarNotifierValidationService implements Serializable {
 
         //Validates the input file (nom empty)
         try {
-            if (!inputMetric.validateInputFile(inputFile)) {
+            TusarNotifierErrorCollector errors = TusarNotifierErrorCollector.newInstance(tusarToolInfo.isValidationErrorsFiles() ? tusarToolInfo.getOutputDir() : null, inputFile, "input");
+            boolean valid;
+            try {
+                synchronized (getValidationLock(inputMetric)) {
+                    valid = inputMetric.validateInputFile(inputFile);
+                    if (!valid) {
+                        errors.addAll(inputMetric.getInputValidationErrors());
+                    }
+                }
+            } finally {
+                errors.close();
+            }
+            if (!valid) {
 
                 //Ignores invalid files
                 tusarNotifierLog.warning("The file '" + inputFile + "' is an invalid file.");
-                for (ValidationError validatorError : inputMetric.getInputValidationErrors()) {
-                    tusarNotifierLog.warning(validatorError.toString());
-                }
+                tusarNotifierLog.validationWarnings(errors);
 
                 return false;
             }
@@ -88,6 +110,24 @@ public class TusarNotifierValidationService implements Serializable {
     }
 
 
+    /**
+     * Checks if an input file is valid for a tool, without reporting the validation errors
+     *
+     * @param tusarToolInfo the tusar tool info wrapper
+     * @param inputFile     the current input file
+     * @return true if the input file is valid, false otherwise
+     */
+    public boolean isValidInputFile(TusarToolInfo tusarToolInfo, File inputFile) {
+        InputMetric inputMetric = tusarToolInfo.getMetricsType().getInputMetric();
+        try {
+            synchronized (getValidationLock(inputMetric)) {
+                return inputMetric.validateInputFile(inputFile);
+            }
+        } catch (ValidationException ve) {
+            return false;
+        }
+    }
+
     /**
      * Validates the converted file against a JUnit format
      *
@@ -102,12 +142,21 @@ public class TusarNotifierValidationService implements Serializable {
 
         try {
             //Validates the output
-            boolean validateOutput = inputMetric.validateOutputFile(junitTargetFile);
-            if (!validateOutput) {
-                tusarNotifierLog.error("The converted file for the input file '" + inputFile + "' doesn't match the TUSAR format");
-                for (ValidationError validatorError : inputMetric.getOutputValidationErrors()) {
-                    tusarNotifierLog.error(validatorError.toString());
+            TusarNotifierErrorCollector errors = TusarNotifierErrorCollector.newInstance(tusarToolInfo.isValidationErrorsFiles() ? tusarToolInfo.getOutputDir() : null, inputFile, "output");
+            boolean valid;
+            try {
+                synchronized (getValidationLock(inputMetric)) {
+                    valid = inputMetric.validateOutputFile(junitTargetFile);
+                    if (!valid) {
+                        errors.addAll(inputMetric.getOutputValidationErrors());
+                    }
                 }
+            } finally {
+                errors.close();
+            }
+            if (!valid) {
+                tusarNotifierLog.error("The converted file for the input file '" + inputFile + "' doesn't match the TUSAR format");
+                tusarNotifierLog.validationErrors(errors);
                 return false;
             }
 
@@ -117,4 +166,14 @@ public class TusarNotifierValidationService implements Serializable {
 
         return true;
     }
+
+    /**
+     * The input metrics are shared by the workers of all the builds of the node, and the dtkit ones keep the errors
+     * of their last validation: such a validation and the read of its errors are done under the lock of the input
+     * metric, the errors go to the bounded collector of the call without being copied.
+     * The passthrough input metrics keep no validation state and are not locked.
+     */
+    private static Object getValidationLock(InputMetric inputMetric) {
+        return inputMetric instanceof PassthroughInputMetric ? new Object() : inputMetric;
+    }
 }
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.service;
+
+import com.thalesgroup.dtkit.metrics.model.OutputMetric;
+import com.thalesgroup.dtkit.tusar.model.TusarModel;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierCompression;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+
+
+/**
+ * Holds the compiled schemas of all the TUSAR versions for the whole process.
+ * <p/>
+ * The schemas are indexed by their target namespace, so that the root element of a file
+ * gives the few schemas the file can be valid against.
+ */
+public class TusarSchemaRegistry {
+
+    private static TusarSchemaRegistry instance;
+
+    private final Map<String, List<TusarSchema>> schemasByNamespace = new HashMap<String, List<TusarSchema>>();
+
+    private final Map<String, Schema> schemasByOutputMetric = new HashMap<String, Schema>();
+
+    /**
+     * The TUSAR versions whose schemas can't be compiled by the registry, validated with dtkit
+     */
+    private final List<OutputMetric> unresolvedOutputMetrics = new ArrayList<OutputMetric>();
+
+    private final XMLInputFactory xmlInputFactory;
+
+    private TusarSchemaRegistry() {
+        xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.FALSE);
+
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        for (OutputMetric outputMetric : TusarModel.getAllTUSAROutput()) {
+            if (!register(schemaFactory, outputMetric)) {
+                unresolvedOutputMetrics.add(outputMetric);
+            }
+        }
+    }
+
+    public static synchronized TusarSchemaRegistry getInstance() {
+        if (instance == null) {
+            instance = new TusarSchemaRegistry();
+        }
+        return instance;
+    }
+
+    private boolean register(SchemaFactory schemaFactory, OutputMetric outputMetric) {
+        String[] xsdNameList = outputMetric.getXsdNameList();
+        if (xsdNameList == null || xsdNameList.length == 0) {
+            return false;
+        }
+
+        Source[] sources = new Source[xsdNameList.length];
+        Set<String> namespaces = new HashSet<String>();
+        try {
+            for (int i = 0; i < xsdNameList.length; i++) {
+                URL xsdURL = outputMetric.getClass().getResource(xsdNameList[i]);
+                if (xsdURL == null) {
+                    return false;
+                }
+                namespaces.add(getTargetNamespace(xsdURL));
+                sources[i] = new StreamSource(xsdURL.toExternalForm());
+            }
+            Schema schema;
+            synchronized (schemaFactory) {
+                schema = schemaFactory.newSchema(sources);
+            }
+
+            schemasByOutputMetric.put(outputMetric.getClass().getName(), schema);
+            TusarSchema tusarSchema = new TusarSchema(outputMetric.getVersion(), schema);
+            for (String namespace : namespaces) {
+                List<TusarSchema> schemas = schemasByNamespace.get(namespace);
+                if (schemas == null) {
+                    schemas = new ArrayList<TusarSchema>();
+                    schemasByNamespace.put(namespace, schemas);
+                }
+                schemas.add(tusarSchema);
+            }
+            return true;
+        } catch (SAXException se) {
+            return false;
+        } catch (IOException ioe) {
+            return false;
+        } catch (XMLStreamException xse) {
+            return false;
+        }
+    }
+
+    private String getTargetNamespace(URL xsdURL) throws IOException, XMLStreamException {
+        InputStream is = xsdURL.openStream();
+        try {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        String targetNamespace = reader.getAttributeValue(null, "targetNamespace");
+                        return targetNamespace == null ? "" : targetNamespace;
+                    }
+                }
+                return "";
+            } finally {
+                reader.close();
+            }
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Reads the root element of a file
+     *
+     * @param inputXMLFile the file
+     * @return the namespace (empty when there is no namespace), the version attribute and the local name of the
+     *         root element, or null if the file isn't a well-formed XML file
+     */
+    public String[] readRootElement(File inputXMLFile) {
+        try {
+            InputStream is = TusarNotifierCompression.open(inputXMLFile);
+            try {
+                return readRootElement(is);
+            } finally {
+                is.close();
+            }
+        } catch (IOException ioe) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the root element of a stream, only the first bytes of the stream are read
+     *
+     * @param is the stream
+     * @return the namespace (empty when there is no namespace), the version attribute and the local name of the
+     *         root element, or null if the stream isn't a well-formed XML document
+     */
+    public String[] readRootElement(InputStream is) {
+        try {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        String namespace = reader.getNamespaceURI();
+                        return new String[]{namespace == null ? "" : namespace, reader.getAttributeValue(null, "version"), reader.getLocalName()};
+                    }
+                }
+                return null;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException xse) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the schemas a root element can be valid against, the schemas of the version given by the
+     * root element come first
+     *
+     * @param namespace the namespace of the root element
+     * @param version   the version attribute of the root element, may be null
+     * @return the candidate schemas, empty if the namespace isn't a TUSAR namespace
+     */
+    public List<Schema> getSchemas(String namespace, String version) {
+        List<TusarSchema> tusarSchemas = schemasByNamespace.get(namespace);
+        if (tusarSchemas == null) {
+            return Collections.emptyList();
+        }
+        List<Schema> schemas = new ArrayList<Schema>(tusarSchemas.size());
+        for (TusarSchema tusarSchema : tusarSchemas) {
+            if (tusarSchema.isVersion(version)) {
+                schemas.add(0, tusarSchema.getSchema());
+            } else {
+                schemas.add(tusarSchema.getSchema());
+            }
+        }
+        return schemas;
+    }
+
+    /**
+     * Checks if a namespace is the namespace of a TUSAR version
+     *
+     * @param namespace the namespace
+     * @return true if schemas of the registry have this target namespace
+     */
+    public boolean isTusarNamespace(String namespace) {
+        return schemasByNamespace.containsKey(namespace);
+    }
+
+    /**
+     * Gets the compiled schema of a TUSAR version
+     *
+     * @param outputMetric the TUSAR version
+     * @return the schema, null if the schemas of this version are not compiled by the registry
+     */
+    public Schema getSchema(OutputMetric outputMetric) {
+        return outputMetric == null ? null : schemasByOutputMetric.get(outputMetric.getClass().getName());
+    }
+
+    /**
+     * Gets the TUSAR versions whose schemas are not compiled by the registry
+     *
+     * @return the output metrics to validate with dtkit
+     */
+    public List<OutputMetric> getUnresolvedOutputMetrics() {
+        return Collections.unmodifiableList(unresolvedOutputMetrics);
+    }
+
+    private static class TusarSchema {
+
+        private final String version;
+
+        private final Schema schema;
+
+        private TusarSchema(String version, Schema schema) {
+            this.version = version;
+            this.schema = schema;
+        }
+
+        public boolean isVersion(String rootVersion) {
+            return version != null && rootVersion != null && (rootVersion.equals(version) || rootVersion.startsWith(version + "."));
+        }
+
+        public Schema getSchema() {
+            return schema;
+        }
+    }
+}
@@ -0,0 +1,506 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.service;
+
+import com.thalesgroup.dtkit.metrics.hudson.api.type.MetricsType;
+import com.thalesgroup.dtkit.metrics.model.InputMetric;
+import com.thalesgroup.dtkit.metrics.model.InputMetricXSL;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.CustomInputMetric;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.TusarStreamWriter;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierCompression;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierFileTransfer;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierTemplatesCache;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.*;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Converts a large report of a built-in stylesheet converter fragment by fragment, with a memory use bounded
+ * by the fragment size whatever the report size.
+ * <p/>
+ * The report is read as a stream and split at its records: the test suites of a JUnit report, the packages
+ * of a Cobertura report, the errors of a Cppcheck report, the files of a Checkstyle or a Gnatmetric report,
+ * the violations of a C++test report and the problems of a Klocwork report. A fragment is a document with
+ * the elements enclosing the records, the content of these elements before the first record and a batch
+ * of records; the content after the records only goes in the last fragment. Each fragment is converted in
+ * memory by the stylesheet of the tool, and the converted fragments are merged as the aggregated TUSAR files
+ * are: the output has the root and the category elements of the first fragment.
+ * <p/>
+ * A report whose structure doesn't fit (another root element, text around the records, records at several
+ * places, too much content around the records) or whose fragments can't be converted or merged isn't
+ * converted by fragments, it is converted whole instead.
+ * The fragment size is given by the system property
+ * <code>com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarStreamingConverter.fragmentSize</code>
+ * (in bytes, 8 MB by default).
+ */
+public class TusarStreamingConverter {
+
+    private static final long FRAGMENT_SIZE = Long.getLong(TusarStreamingConverter.class.getName() + ".fragmentSize", 8 * 1024 * 1024);
+
+    /**
+     * The maximum size of the content around the records, the content before the records is part of every fragment
+     */
+    private static final long MAX_CONTEXT_SIZE = Long.getLong(TusarStreamingConverter.class.getName() + ".maxContextSize", 4 * 1024 * 1024);
+
+    private static final String ANY_ELEMENT = "*";
+
+    /**
+     * The paths of the records from the root element, by tool name
+     */
+    private static final Map<String, String[][]> RECORD_PATHS = new HashMap<String, String[][]>();
+
+    static {
+        RECORD_PATHS.put("JUnit", new String[][]{{"testsuites", "testsuite"}, {"testsuite", "testcase"}});
+        RECORD_PATHS.put("Cobertura", new String[][]{{"coverage", "packages", "package"}});
+        RECORD_PATHS.put("Cppcheck", new String[][]{{"results", "errors", "error"}, {"results", "error"}});
+        RECORD_PATHS.put("Checkstyle", new String[][]{{"checkstyle", "file"}});
+        RECORD_PATHS.put("CppTest", new String[][]{{"ResultsSession", "CodingStandards", "StdViols", ANY_ELEMENT}});
+        RECORD_PATHS.put("Klocwork", new String[][]{{"errorList", "problem"}});
+        RECORD_PATHS.put("Gnatmetric", new String[][]{{"global", "file"}});
+    }
+
+    /**
+     * The converters by input metric class, the input metrics without converter are mapped to UNAVAILABLE
+     */
+    private static final Map<String, TusarStreamingConverter> converters = new ConcurrentHashMap<String, TusarStreamingConverter>();
+
+    private static final TusarStreamingConverter UNAVAILABLE = new TusarStreamingConverter(null, null, 0);
+
+    private final URL xslURL;
+
+    private final String[][] recordPaths;
+
+    private final long fragmentSize;
+
+    TusarStreamingConverter(URL xslURL, String[][] recordPaths, long fragmentSize) {
+        this.xslURL = xslURL;
+        this.recordPaths = recordPaths;
+        this.fragmentSize = fragmentSize;
+    }
+
+    /**
+     * Gets the streaming converter of a tool
+     *
+     * @param metricsType the tool
+     * @return the converter, or null when the reports of the tool can only be converted whole
+     */
+    public static TusarStreamingConverter getConverter(MetricsType metricsType) {
+        InputMetric inputMetric = metricsType.getInputMetric();
+        if (!(inputMetric instanceof InputMetricXSL) || inputMetric instanceof CustomInputMetric) {
+            return null;
+        }
+        String key = inputMetric.getClass().getName();
+        TusarStreamingConverter converter = converters.get(key);
+        if (converter == null) {
+            converter = createConverter(metricsType, (InputMetricXSL) inputMetric);
+            converters.put(key, converter == null ? UNAVAILABLE : converter);
+        }
+        return converter == UNAVAILABLE ? null : converter;
+    }
+
+    private static TusarStreamingConverter createConverter(MetricsType metricsType, InputMetricXSL inputMetric) {
+
+        //The types are named after their tool, such as JUnitTusarHudsonTestType
+        String[][] recordPaths = null;
+        for (Map.Entry<String, String[][]> entry : RECORD_PATHS.entrySet()) {
+            if (metricsType.getClass().getSimpleName().startsWith(entry.getKey())) {
+                recordPaths = entry.getValue();
+                break;
+            }
+        }
+
+        //Only the built-in stylesheets of the dtkit default conversion are applied to fragments
+        if (recordPaths == null || !TusarConversionPipeline.isDefaultBehavior(inputMetric) || inputMetric.getXslFile() != null) {
+            return null;
+        }
+        URL xslURL = TusarConversionPipeline.getResource(inputMetric, inputMetric.getXslName());
+        return xslURL == null ? null : new TusarStreamingConverter(xslURL, recordPaths, FRAGMENT_SIZE);
+    }
+
+    /**
+     * @param fragmentSize the fragment size, in bytes
+     * @return the converter of the same tool with another fragment size
+     */
+    TusarStreamingConverter withFragmentSize(long fragmentSize) {
+        return new TusarStreamingConverter(xslURL, recordPaths, fragmentSize);
+    }
+
+    /**
+     * Converts a report fragment by fragment
+     *
+     * @param inputFile  the report, plain or gzip compressed
+     * @param outputFile the TUSAR output file, written only when the report is converted
+     * @return false if the report can't be converted by fragments, nothing is written then
+     * @throws IOException the report can't be read or the output can't be written
+     */
+    public boolean convert(File inputFile, File outputFile) throws IOException {
+
+        Templates templates;
+        try {
+            templates = TusarNotifierTemplatesCache.getInstance().getTemplates(xslURL);
+        } catch (TransformerException te) {
+            return false;
+        }
+
+        //The output is written aside and replaces the previous output, which is never rewritten in place
+        File tmpOutputFile = TusarNotifierFileTransfer.getTempFile(outputFile);
+        boolean converted = false;
+        InputStream is = TusarNotifierCompression.open(inputFile);
+        try {
+            TusarStreamWriter writer = new TusarStreamWriter(new FileOutputStream(tmpOutputFile));
+            boolean split;
+            try {
+                Conversion conversion = new Conversion(templates, inputFile, new TusarDocumentMerger(writer));
+                XMLStreamReader reader = conversion.inputFactory.createXMLStreamReader(is);
+                try {
+                    split = conversion.split(reader);
+                } finally {
+                    reader.close();
+                }
+            } finally {
+                writer.close();
+            }
+            converted = split;
+        } catch (XMLStreamException xse) {
+            //Not well-formed report or fragments that can't be merged, left to the whole conversion
+        } catch (TransformerException te) {
+            //Fragment that can't be converted alone, left to the whole conversion
+        } finally {
+            is.close();
+            if (!converted) {
+                tmpOutputFile.delete();
+            }
+        }
+
+        if (converted) {
+            TusarNotifierFileTransfer.replace(tmpOutputFile, outputFile);
+        }
+        return converted;
+    }
+
+    /**
+     * The state of the conversion of a report
+     */
+    private class Conversion {
+
+        private final XMLInputFactory inputFactory = TusarDocumentMerger.newInputFactory();
+
+        private final Templates templates;
+
+        private final File inputFile;
+
+        private final TusarDocumentMerger merger;
+
+        /**
+         * The elements enclosing the records, from the root element
+         */
+        private final List<StartElement> ancestors = new ArrayList<StartElement>();
+
+        /**
+         * The content of each enclosing element before the first record
+         */
+        private final List<ByteArrayOutputStream> headers = new ArrayList<ByteArrayOutputStream>();
+
+        /**
+         * The content of each enclosing element after the first record
+         */
+        private final List<ByteArrayOutputStream> trailers = new ArrayList<ByteArrayOutputStream>();
+
+        private long contextSize;
+
+        private String[] recordPath;
+
+        private ByteArrayOutputStream fragment;
+
+        private TusarStreamWriter fragmentWriter;
+
+        private int fragments;
+
+        private Conversion(Templates templates, File inputFile, TusarDocumentMerger merger) {
+            this.templates = templates;
+            this.inputFile = inputFile;
+            this.merger = merger;
+        }
+
+        /**
+         * Splits the report into fragments and converts them
+         *
+         * @return false if the report structure doesn't fit a conversion by fragments
+         */
+        private boolean split(XMLStreamReader reader) throws XMLStreamException, TransformerException, IOException {
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == 1) {
+                        if (getPath(depth, reader.getLocalName(), false) == null) {
+                            return false;
+                        }
+                        addAncestor(reader);
+                        continue;
+                    }
+                    //All the enclosing elements are open when the element is a child of the last one
+                    if (depth == ancestors.size() + 1) {
+                        String[] path = getPath(depth, reader.getLocalName(), true);
+                        if (path != null) {
+                            if (recordPath != null && recordPath != path) {
+                                return false;
+                            }
+                            recordPath = path;
+                            copyRecord(reader);
+                            depth--;
+                            if (fragment.size() >= fragmentSize) {
+                                convertFragment(false);
+                            }
+                            continue;
+                        }
+                        if (recordPath == null && getPath(depth, reader.getLocalName(), false) != null) {
+                            addAncestor(reader);
+                            continue;
+                        }
+                    }
+                    if (!copyContext(reader, depth - 2)) {
+                        return false;
+                    }
+                    depth--;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    if (recordPath == null) {
+                        //An enclosing element without records
+                        return false;
+                    }
+                } else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) && !reader.isWhiteSpace()) {
+                    return false;
+                } else if (event == XMLStreamConstants.ENTITY_REFERENCE) {
+                    return false;
+                }
+                //The spaces, comments and processing instructions around the records aren't converted
+            }
+
+            if (recordPath == null) {
+                return false;
+            }
+            if (fragment != null || hasTrailers()) {
+                convertFragment(true);
+            }
+            merger.finish();
+            return true;
+        }
+
+        /**
+         * @param depth    the depth of an element
+         * @param name     the local name of the element
+         * @param isRecord true for the path of a record element, false for the path of an enclosing element
+         * @return the record path where the element is at its place, null if there is none
+         */
+        private String[] getPath(int depth, String name, boolean isRecord) {
+            for (String[] path : recordPaths) {
+                if (isRecord ? path.length != depth : path.length <= depth) {
+                    continue;
+                }
+                boolean matches = ANY_ELEMENT.equals(path[depth - 1]) || path[depth - 1].equals(name);
+                for (int i = 0; matches && i < depth - 1; i++) {
+                    matches = path[i].equals(ancestors.get(i).localName);
+                }
+                if (matches) {
+                    return path;
+                }
+            }
+            return null;
+        }
+
+        private void addAncestor(XMLStreamReader reader) {
+            ancestors.add(new StartElement(reader));
+            headers.add(new ByteArrayOutputStream());
+            trailers.add(new ByteArrayOutputStream());
+        }
+
+        private boolean hasTrailers() {
+            for (ByteArrayOutputStream trailer : trailers) {
+                if (trailer.size() != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Copies a record to the current fragment, from its start element to its end element
+         */
+        private void copyRecord(XMLStreamReader reader) throws XMLStreamException, IOException {
+            if (fragment == null) {
+                openFragment();
+            }
+            copyElement(reader, fragmentWriter);
+            fragmentWriter.flush();
+        }
+
+        /**
+         * Copies an element around the records to the content of its enclosing element
+         *
+         * @param level the level of the enclosing element
+         * @return false if there is too much content around the records
+         */
+        private boolean copyContext(XMLStreamReader reader, int level) throws XMLStreamException, IOException {
+            ByteArrayOutputStream context = recordPath == null ? headers.get(level) : trailers.get(level);
+            int size = context.size();
+            TusarStreamWriter contextWriter = new TusarStreamWriter(context);
+            try {
+                copyElement(reader, contextWriter);
+            } finally {
+                contextWriter.close();
+            }
+            contextSize += context.size() - size;
+            return contextSize <= MAX_CONTEXT_SIZE;
+        }
+
+        private void copyElement(XMLStreamReader reader, TusarStreamWriter writer) throws XMLStreamException, IOException {
+            int depth = 0;
+            do {
+                int event = reader.getEventType();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+                writer.copyEvent(reader);
+                if (depth == 0) {
+                    return;
+                }
+                reader.next();
+            } while (true);
+        }
+
+        /**
+         * Opens a fragment with the enclosing elements and their content before the records
+         */
+        private void openFragment() throws IOException {
+            fragment = new ByteArrayOutputStream();
+            fragmentWriter = new TusarStreamWriter(fragment);
+            fragmentWriter.writeStartDocument();
+            for (int i = 0; i < ancestors.size(); i++) {
+                ancestors.get(i).write(fragmentWriter);
+                fragmentWriter.flush();
+                headers.get(i).writeTo(fragment);
+            }
+        }
+
+        /**
+         * Closes the current fragment, converts it and appends its converted content to the output
+         *
+         * @param last true for the last fragment, with the content after the records
+         */
+        private void convertFragment(boolean last) throws XMLStreamException, TransformerException, IOException {
+            if (fragment == null) {
+                openFragment();
+            }
+            for (int i = ancestors.size() - 1; i >= 0; i--) {
+                if (last) {
+                    fragmentWriter.flush();
+                    trailers.get(i).writeTo(fragment);
+                }
+                fragmentWriter.writeEndElement();
+            }
+            fragmentWriter.close();
+            byte[] content = fragment.toByteArray();
+            fragment = null;
+            fragmentWriter = null;
+            fragments++;
+
+            ByteArrayOutputStream converted = new ByteArrayOutputStream();
+            templates.newTransformer().transform(
+                    new StreamSource(new ByteArrayInputStream(content), inputFile.toURI().toASCIIString()),
+                    new StreamResult(converted));
+
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(converted.toByteArray()));
+            try {
+                merger.append(reader, "fragment " + fragments + " of the file " + inputFile);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * An enclosing element, written again at the start of each fragment
+     */
+    private static class StartElement {
+
+        private final String prefix;
+
+        private final String localName;
+
+        private final String namespaceURI;
+
+        private final String[] namespaces;
+
+        private final String[] attributes;
+
+        private StartElement(XMLStreamReader reader) {
+            prefix = toString(reader.getPrefix());
+            localName = reader.getLocalName();
+            namespaceURI = toString(reader.getNamespaceURI());
+            namespaces = new String[reader.getNamespaceCount() * 2];
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                namespaces[2 * i] = toString(reader.getNamespacePrefix(i));
+                namespaces[2 * i + 1] = toString(reader.getNamespaceURI(i));
+            }
+            attributes = new String[reader.getAttributeCount() * 4];
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                attributes[4 * i] = toString(reader.getAttributePrefix(i));
+                attributes[4 * i + 1] = reader.getAttributeLocalName(i);
+                attributes[4 * i + 2] = toString(reader.getAttributeNamespace(i));
+                attributes[4 * i + 3] = reader.getAttributeValue(i);
+            }
+        }
+
+        private void write(TusarStreamWriter writer) throws IOException {
+            writer.writeStartElement(prefix, localName, namespaceURI);
+            for (int i = 0; i < namespaces.length; i += 2) {
+                writer.writeNamespace(namespaces[i], namespaces[i + 1]);
+            }
+            for (int i = 0; i < attributes.length; i += 4) {
+                writer.writeAttribute(attributes[i], attributes[i + 1], attributes[i + 2], attributes[i + 3]);
+            }
+        }
+
+        private static String toString(String value) {
+            return value == null ? "" : value;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.transformer;
+
+import java.io.Serializable;
+
+/**
+ * The number of reports of a tool allowed to fail without failing the tool,
+ * as an absolute count ('5') or as a percentage of the found reports ('10%').
+ * <p/>
+ * With a failure budget, all the reports are processed whatever the failures and all the errors are reported.
+ */
+public class TusarFailureBudget implements Serializable {
+
+    private final int value;
+
+    private final boolean percentage;
+
+    private TusarFailureBudget(int value, boolean percentage) {
+        this.value = value;
+        this.percentage = percentage;
+    }
+
+    /**
+     * Parses a failure budget
+     *
+     * @param budget the budget, a count or a percentage
+     * @return the failure budget, or null if the budget is empty or not valid
+     */
+    public static TusarFailureBudget parse(String budget) {
+        if (budget == null || budget.trim().length() == 0) {
+            return null;
+        }
+        String value = budget.trim();
+        boolean percentage = value.endsWith("%");
+        if (percentage) {
+            value = value.substring(0, value.length() - 1).trim();
+        }
+        try {
+            int parsedValue = Integer.parseInt(value);
+            if (parsedValue < 0 || (percentage && parsedValue > 100)) {
+                return null;
+            }
+            return new TusarFailureBudget(parsedValue, percentage);
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the number of failed reports allowed
+     *
+     * @param nbReports the number of found reports
+     * @return the allowed failures
+     */
+    public int getAllowedFailures(int nbReports) {
+        if (percentage) {
+            return (int) ((long) nbReports * value / 100);
+        }
+        return value;
+    }
+
+    /**
+     * Checks if the failed reports exceed the budget
+     *
+     * @param failures  the number of failed reports
+     * @param nbReports the number of found reports
+     * @return true if the tool is in failure
+     */
+    public boolean isExceeded(int failures, int nbReports) {
+        return failures > getAllowedFailures(nbReports);
+    }
+
+    @Override
+    public String toString() {
+        return percentage ? value + "%" : String.valueOf(value);
+    }
+}
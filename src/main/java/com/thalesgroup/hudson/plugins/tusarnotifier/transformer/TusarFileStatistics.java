@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.transformer;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timings and the sizes of the processing of one report
+ */
+@ExportedBean(defaultVisibility = 2)
+public class TusarFileStatistics implements Serializable {
+
+    private final String fileName;
+
+    private final long bytesIn;
+
+    private long bytesOut;
+
+    private long validateInputTime;
+
+    private long conversionTime;
+
+    private long validateOutputTime;
+
+    private boolean cached;
+
+    private boolean success;
+
+    public TusarFileStatistics(String fileName, long bytesIn) {
+        this.fileName = fileName;
+        this.bytesIn = bytesIn;
+    }
+
+    void setBytesOut(long bytesOut) {
+        this.bytesOut = bytesOut;
+    }
+
+    void setValidateInputTime(long validateInputTime) {
+        this.validateInputTime = validateInputTime;
+    }
+
+    void setConversionTime(long conversionTime) {
+        this.conversionTime = conversionTime;
+    }
+
+    void setValidateOutputTime(long validateOutputTime) {
+        this.validateOutputTime = validateOutputTime;
+    }
+
+    void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    /**
+     * @return the report, relative to the workspace
+     */
+    @Exported
+    public String getFileName() {
+        return fileName;
+    }
+
+    @Exported
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    @Exported
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * @return the validation time of the report, in milliseconds
+     */
+    @Exported
+    public long getValidateInputTime() {
+        return TimeUnit.NANOSECONDS.toMillis(validateInputTime);
+    }
+
+    /**
+     * @return the conversion time of the report (or its restoration from the conversion cache), in milliseconds
+     */
+    @Exported
+    public long getConversionTime() {
+        return TimeUnit.NANOSECONDS.toMillis(conversionTime);
+    }
+
+    /**
+     * @return the validation time of the converted file, in milliseconds
+     */
+    @Exported
+    public long getValidateOutputTime() {
+        return TimeUnit.NANOSECONDS.toMillis(validateOutputTime);
+    }
+
+    /**
+     * @return the processing time of the report, in milliseconds
+     */
+    @Exported
+    public long getTotalTime() {
+        return TimeUnit.NANOSECONDS.toMillis(getTotalNanos());
+    }
+
+    long getTotalNanos() {
+        return validateInputTime + conversionTime + validateOutputTime;
+    }
+
+    long getValidateInputNanos() {
+        return validateInputTime;
+    }
+
+    long getConversionNanos() {
+        return conversionTime;
+    }
+
+    long getValidateOutputNanos() {
+        return validateOutputTime;
+    }
+
+    /**
+     * @return true if the converted file comes from the conversion cache
+     */
+    @Exported
+    public boolean isCached() {
+        return cached;
+    }
+
+    @Exported
+    public boolean isSuccess() {
+        return success;
+    }
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.transformer;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of the processing of all the tools of a build, in the order of the tools
+ */
+@ExportedBean(defaultVisibility = 2)
+public class TusarNotifierBatchResult implements Serializable {
+
+    private final List<TusarToolResult> toolResults = new ArrayList<TusarToolResult>();
+
+    private long scanTime;
+
+    public void addToolResult(TusarToolResult toolResult) {
+        toolResults.add(toolResult);
+    }
+
+    void setScanTime(long scanTime) {
+        this.scanTime = scanTime;
+    }
+
+    /**
+     * @return the time spent to find the reports of all the tools in the workspace, in milliseconds
+     */
+    @Exported
+    public long getScanTime() {
+        return scanTime;
+    }
+
+    @Exported(inline = true)
+    public List<TusarToolResult> getToolResults() {
+        return Collections.unmodifiableList(toolResults);
+    }
+
+    /**
+     * @return the number of processed reports, all the tools included
+     */
+    @Exported
+    public int getFiles() {
+        int files = 0;
+        for (TusarToolResult toolResult : toolResults) {
+            if (toolResult.getStatistics() != null) {
+                files += toolResult.getStatistics().getFiles();
+            }
+        }
+        return files;
+    }
+
+    /**
+     * @return the elapsed time of the processing on the node, the scan included, in milliseconds
+     */
+    @Exported
+    public long getElapsedTime() {
+        long elapsedTime = scanTime;
+        for (TusarToolResult toolResult : toolResults) {
+            elapsedTime += toolResult.getElapsedTime();
+        }
+        return elapsedTime;
+    }
+
+    @Exported
+    public int getCacheHits() {
+        int cacheHits = 0;
+        for (TusarToolResult toolResult : toolResults) {
+            cacheHits += toolResult.getCacheHits();
+        }
+        return cacheHits;
+    }
+
+    @Exported
+    public int getCacheMisses() {
+        int cacheMisses = 0;
+        for (TusarToolResult toolResult : toolResults) {
+            cacheMisses += toolResult.getCacheMisses();
+        }
+        return cacheMisses;
+    }
+
+    /**
+     * Checks if the processing of a tool has failed
+     *
+     * @return true if at least one tool is in failure, false otherwise
+     */
+    public boolean hasFailures() {
+        for (TusarToolResult toolResult : toolResults) {
+            if (toolResult.isFailed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
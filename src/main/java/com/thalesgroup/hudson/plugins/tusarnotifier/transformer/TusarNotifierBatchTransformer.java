@@ -0,0 +1,447 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.transformer;
+
+import com.google.inject.Inject;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierAggregationService;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierLog;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierReportProcessingService;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierRoutingTable;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierManifest;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierThreadFactory;
+import hudson.FilePath;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Processes all the tools of a build with a single call to the node owning the workspace
+ */
+public class TusarNotifierBatchTransformer implements FilePath.FileCallable<TusarNotifierBatchResult>, Serializable {
+
+    private final List<TusarNotifierTransformer> transformers = new ArrayList<TusarNotifierTransformer>();
+
+    private final List<AutoTool> autoTools = new ArrayList<AutoTool>();
+
+    private int concurrentTools;
+
+    private int maxWorkers;
+
+    /**
+     * The permit of the large reports converted in memory, one at a time for all the tools of the build
+     */
+    private final Semaphore largeReportPermit = new Semaphore(1, true);
+
+    private TusarNotifierReportProcessingService tusarNotifierReportProcessingService;
+
+    private TusarNotifierAggregationService tusarNotifierAggregationService;
+
+    private TusarNotifierLog tusarNotifierLog;
+
+    @Inject
+    @SuppressWarnings("unused")
+    void loadService(
+            TusarNotifierReportProcessingService tusarNotifierReportProcessingService,
+            TusarNotifierAggregationService tusarNotifierAggregationService,
+            TusarNotifierLog tusarNotifierLog) {
+        this.tusarNotifierReportProcessingService = tusarNotifierReportProcessingService;
+        this.tusarNotifierAggregationService = tusarNotifierAggregationService;
+        this.tusarNotifierLog = tusarNotifierLog;
+    }
+
+    /**
+     * Adds a tool to process
+     *
+     * @param transformer the transformer of the tool
+     */
+    public void addTransformer(TusarNotifierTransformer transformer) {
+        transformer.setLargeReportPermit(largeReportPermit);
+        transformers.add(transformer);
+    }
+
+    /**
+     * Adds an auto-detected type to process, its reports are routed to the tools of the routing table
+     *
+     * @param tusarToolInfo the tool info of the auto-detected type
+     * @param routingTable  the routing table
+     * @param transformers  the transformer of each tool of the routing table, in the table order
+     */
+    public void addAutoTransformers(TusarToolInfo tusarToolInfo, TusarNotifierRoutingTable routingTable, List<TusarNotifierTransformer> transformers) {
+        for (TusarNotifierTransformer transformer : transformers) {
+            transformer.setLargeReportPermit(largeReportPermit);
+        }
+        autoTools.add(new AutoTool(tusarToolInfo, routingTable, transformers));
+    }
+
+    /**
+     * Sets the maximum number of tools processed at the same time
+     *
+     * @param concurrentTools the maximum number of tools, 0 or 1 to process the tools one after the other
+     */
+    public void setConcurrentTools(int concurrentTools) {
+        this.concurrentTools = concurrentTools;
+    }
+
+    /**
+     * Sets the maximum number of reports converted at the same time, for all the tools of the build
+     *
+     * @param maxWorkers the maximum number of reports, 0 or less for the number of processors of the node
+     */
+    public void setMaxWorkers(int maxWorkers) {
+        this.maxWorkers = maxWorkers;
+    }
+
+    public TusarNotifierBatchResult invoke(File ws, hudson.remoting.VirtualChannel channel) throws IOException, InterruptedException {
+        try {
+            return processTools(ws);
+        } finally {
+            //The buffered messages are written before the build goes on
+            tusarNotifierLog.flush();
+        }
+    }
+
+    private TusarNotifierBatchResult processTools(File ws) throws IOException, InterruptedException {
+
+        TusarNotifierBatchResult batchResult = new TusarNotifierBatchResult();
+
+        //Finds the reports of all the tools and of all the auto-detected types with a single walk of the workspace
+        List<TusarToolInfo> tusarToolInfos = new ArrayList<TusarToolInfo>(transformers.size() + autoTools.size());
+        for (TusarNotifierTransformer transformer : transformers) {
+            tusarToolInfos.add(transformer.getTusarToolInfo());
+        }
+        for (AutoTool autoTool : autoTools) {
+            tusarToolInfos.add(autoTool.tusarToolInfo);
+        }
+        long start = System.currentTimeMillis();
+        List<List<String>> reports = tusarNotifierReportProcessingService.findReports(tusarToolInfos, ws);
+        batchResult.setScanTime(System.currentTimeMillis() - start);
+
+        //The concurrent tools share the conversion workers, the build doesn't convert more reports at a time than a single tool
+        Semaphore workerPermits = new Semaphore(maxWorkers > 0 ? maxWorkers : Runtime.getRuntime().availableProcessors(), true);
+        for (TusarNotifierTransformer transformer : transformers) {
+            transformer.setWorkerPermits(workerPermits);
+        }
+        for (AutoTool autoTool : autoTools) {
+            for (TusarNotifierTransformer transformer : autoTool.transformers) {
+                transformer.setWorkerPermits(workerPermits);
+            }
+        }
+
+        //Each tool and each auto-detected type is a task, the categories write to separate output directories
+        List<ToolTask> tasks = new ArrayList<ToolTask>(transformers.size() + autoTools.size());
+        for (int i = 0; i < transformers.size(); i++) {
+            tasks.add(new ToolTask(ws, transformers.get(i), null, reports.get(i)));
+        }
+        for (int i = 0; i < autoTools.size(); i++) {
+            tasks.add(new ToolTask(ws, null, autoTools.get(i), reports.get(transformers.size() + i)));
+        }
+
+        List<TusarNotifierTransformer> processedTransformers = new ArrayList<TusarNotifierTransformer>();
+        for (ToolOutcome outcome : runTasks(tasks)) {
+            for (TusarToolResult toolResult : outcome.batchResult.getToolResults()) {
+                batchResult.addToolResult(toolResult);
+            }
+            processedTransformers.addAll(outcome.processedTransformers);
+        }
+
+        writeManifests(processedTransformers);
+
+        if (batchResult.getCacheHits() + batchResult.getCacheMisses() != 0) {
+            tusarNotifierLog.info("Conversion cache: " + batchResult.getCacheHits() + " hit(s), " + batchResult.getCacheMisses() + " miss(es).");
+        }
+
+        return batchResult;
+    }
+
+    /**
+     * Runs the tasks, one after the other or concurrently.
+     * When they run concurrently, the log messages of each task are captured and written in the order of the tasks,
+     * as the outcomes.
+     *
+     * @return the outcome of each task, in the order of the tasks
+     */
+    private List<ToolOutcome> runTasks(List<ToolTask> tasks) throws IOException, InterruptedException {
+
+        List<ToolOutcome> outcomes = new ArrayList<ToolOutcome>(tasks.size());
+        int nbThreads = Math.min(concurrentTools, tasks.size());
+        if (nbThreads <= 1) {
+            for (ToolTask task : tasks) {
+                outcomes.add(task.call());
+            }
+            return outcomes;
+        }
+
+        //The messages of the tools in error, written before their error is rethrown
+        final Map<ToolTask, List<String>> failureMessages = new ConcurrentHashMap<ToolTask, List<String>>();
+        ExecutorService executorService = Executors.newFixedThreadPool(nbThreads, new TusarNotifierThreadFactory("TusarNotifier tool worker"));
+        try {
+            List<Future<ToolOutcome>> futures = new ArrayList<Future<ToolOutcome>>(tasks.size());
+            for (final ToolTask task : tasks) {
+                futures.add(executorService.submit(new Callable<ToolOutcome>() {
+                    public ToolOutcome call() throws Exception {
+                        tusarNotifierLog.startCapture();
+                        try {
+                            ToolOutcome outcome = task.call();
+                            outcome.messages = tusarNotifierLog.stopCapture();
+                            return outcome;
+                        } catch (Exception e) {
+                            failureMessages.put(task, tusarNotifierLog.stopCapture());
+                            throw e;
+                        }
+                    }
+                }));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                ToolOutcome outcome;
+                try {
+                    outcome = futures.get(i).get();
+                } catch (ExecutionException ee) {
+                    List<String> messages = failureMessages.remove(tasks.get(i));
+                    if (messages != null) {
+                        tusarNotifierLog.flush(messages);
+                    }
+                    Throwable cause = ee.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IOException(cause);
+                }
+                tusarNotifierLog.flush(outcome.messages);
+                outcomes.add(outcome);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        return outcomes;
+    }
+
+    private void processTool(File ws, TusarNotifierTransformer transformer, List<String> resultFiles, TusarNotifierBatchResult batchResult) throws IOException, InterruptedException {
+        TusarToolInfo tusarToolInfo = transformer.getTusarToolInfo();
+        long start = System.currentTimeMillis();
+        tusarNotifierReportProcessingService.logFoundReports(tusarToolInfo, ws, tusarToolInfo.getExpandedPattern(), resultFiles);
+        boolean result = transformer.transform(ws, resultFiles);
+        if (!result) {
+            tusarNotifierLog.info("Stopping recording.");
+        }
+        batchResult.addToolResult(new TusarToolResult(tusarToolInfo.getToolName(), result ? TusarToolResult.Status.SUCCESS : TusarToolResult.Status.FAILURE,
+                transformer.getCacheHits(), transformer.getCacheMisses(), System.currentTimeMillis() - start, transformer.getStatistics()));
+    }
+
+    /**
+     * Routes the reports of an auto-detected type to the tools recognizing them, and processes each tool with its reports.
+     * A report recognized by no tool is a failed report of the auto-detected type.
+     *
+     * @return the transformers of the tools with reports
+     */
+    private List<TusarNotifierTransformer> processAutoTool(File ws, AutoTool autoTool, List<String> resultFiles, TusarNotifierBatchResult batchResult) throws IOException, InterruptedException {
+
+        TusarToolInfo tusarToolInfo = autoTool.tusarToolInfo;
+        String toolName = tusarToolInfo.getToolName();
+        tusarNotifierLog.info("Processing " + toolName);
+
+        List<TusarNotifierTransformer> processedTransformers = new ArrayList<TusarNotifierTransformer>();
+        if (tusarNotifierReportProcessingService.isEmptyPattern(tusarToolInfo.getExpandedPattern())) {
+            batchResult.addToolResult(new TusarToolResult(toolName, TusarToolResult.Status.SKIPPED));
+            return processedTransformers;
+        }
+
+        tusarNotifierReportProcessingService.logFoundReports(tusarToolInfo, ws, tusarToolInfo.getExpandedPattern(), resultFiles);
+        if (resultFiles.isEmpty()) {
+            tusarNotifierLog.info("Stopping recording.");
+            batchResult.addToolResult(new TusarToolResult(toolName, TusarToolResult.Status.FAILURE));
+            return processedTransformers;
+        }
+
+        //Only the root element of each report is read, unless several tools declare it
+        List<List<String>> routedFiles = new ArrayList<List<String>>(autoTool.transformers.size());
+        for (int i = 0; i < autoTool.transformers.size(); i++) {
+            routedFiles.add(new ArrayList<String>());
+        }
+        int unrecognized = 0;
+        for (String resultFile : resultFiles) {
+            int tool = route(autoTool, tusarNotifierReportProcessingService.getCurrentReport(ws, resultFile));
+            if (tool == -1) {
+                tusarNotifierLog.warning("The file '" + resultFile + "' isn't recognized by any tool. This file has been ignored.");
+                unrecognized++;
+            } else {
+                routedFiles.get(tool).add(resultFile);
+            }
+        }
+
+        for (int i = 0; i < autoTool.transformers.size(); i++) {
+            if (!routedFiles.get(i).isEmpty()) {
+                TusarNotifierTransformer transformer = autoTool.transformers.get(i);
+                tusarNotifierLog.info("Processing " + transformer.getTusarToolInfo().getToolName() + " (" + toolName + ")");
+                processTool(ws, transformer, routedFiles.get(i), batchResult);
+                processedTransformers.add(transformer);
+            }
+        }
+
+        if (unrecognized != 0) {
+            TusarFailureBudget failureBudget = tusarToolInfo.getFailureBudget();
+            boolean failed = failureBudget == null || failureBudget.isExceeded(unrecognized, resultFiles.size());
+            batchResult.addToolResult(new TusarToolResult(toolName, failed ? TusarToolResult.Status.FAILURE : TusarToolResult.Status.SUCCESS));
+        }
+        return processedTransformers;
+    }
+
+    /**
+     * Routes a report to the first candidate tool validating it, or to the first candidate tool when none does:
+     * its conversion reports the validation errors.
+     *
+     * @return the index of the tool, -1 if no tool recognizes the report
+     */
+    private int route(AutoTool autoTool, File report) {
+        List<Integer> tools = autoTool.routingTable.route(report);
+        if (tools.isEmpty()) {
+            return -1;
+        }
+        if (tools.size() > 1) {
+            for (int tool : tools) {
+                if (autoTool.transformers.get(tool).isValidReport(report)) {
+                    return tool;
+                }
+            }
+        }
+        return tools.get(0);
+    }
+
+    /**
+     * Writes the manifest of each output directory, with the TUSAR files of all the tools of the directory.
+     * When it is requested, the TUSAR files of the directory are aggregated first, otherwise the shards of a previous
+     * aggregation are deleted.
+     */
+    private void writeManifests(List<TusarNotifierTransformer> processedTransformers) {
+        Map<File, SortedMap<String, String>> manifests = new LinkedHashMap<File, SortedMap<String, String>>();
+        for (TusarNotifierTransformer transformer : processedTransformers) {
+            File outputDir = transformer.getTusarToolInfo().getOutputDir();
+            SortedMap<String, String> entries = manifests.get(outputDir);
+            if (entries == null) {
+                entries = new TreeMap<String, String>();
+                manifests.put(outputDir, entries);
+            }
+            entries.putAll(transformer.getOutputs());
+        }
+        int aggregateShards = processedTransformers.isEmpty() ? 0 : processedTransformers.get(0).getTusarToolInfo().getAggregateShards();
+        for (Map.Entry<File, SortedMap<String, String>> manifest : manifests.entrySet()) {
+            SortedMap<String, String> entries = manifest.getValue();
+            if (aggregateShards > 0) {
+                entries = tusarNotifierAggregationService.aggregate(manifest.getKey(), entries, aggregateShards);
+            } else {
+                tusarNotifierAggregationService.deleteShards(manifest.getKey(), entries.keySet());
+            }
+            try {
+                TusarNotifierManifest.write(manifest.getKey(), entries);
+            } catch (IOException ioe) {
+                tusarNotifierLog.warning("Can't write the manifest of '" + manifest.getKey() + "': " + ioe.getMessage());
+            }
+        }
+    }
+
+    private static class AutoTool implements Serializable {
+
+        private final TusarToolInfo tusarToolInfo;
+
+        private final TusarNotifierRoutingTable routingTable;
+
+        private final List<TusarNotifierTransformer> transformers;
+
+        private AutoTool(TusarToolInfo tusarToolInfo, TusarNotifierRoutingTable routingTable, List<TusarNotifierTransformer> transformers) {
+            this.tusarToolInfo = tusarToolInfo;
+            this.routingTable = routingTable;
+            this.transformers = transformers;
+        }
+    }
+
+    /**
+     * The processing of a tool, or of an auto-detected type with the tools its reports are routed to
+     */
+    private class ToolTask {
+
+        private final File ws;
+
+        private final TusarNotifierTransformer transformer;
+
+        private final AutoTool autoTool;
+
+        private final List<String> resultFiles;
+
+        private ToolTask(File ws, TusarNotifierTransformer transformer, AutoTool autoTool, List<String> resultFiles) {
+            this.ws = ws;
+            this.transformer = transformer;
+            this.autoTool = autoTool;
+            this.resultFiles = resultFiles;
+        }
+
+        private ToolOutcome call() throws IOException, InterruptedException {
+            ToolOutcome outcome = new ToolOutcome();
+            if (autoTool != null) {
+                outcome.processedTransformers.addAll(processAutoTool(ws, autoTool, resultFiles, outcome.batchResult));
+                return outcome;
+            }
+
+            String toolName = transformer.getTusarToolInfo().getToolName();
+            tusarNotifierLog.info("Processing " + toolName);
+            if (tusarNotifierReportProcessingService.isEmptyPattern(transformer.getTusarToolInfo().getExpandedPattern())) {
+                outcome.batchResult.addToolResult(new TusarToolResult(toolName, TusarToolResult.Status.SKIPPED));
+                return outcome;
+            }
+            processTool(ws, transformer, resultFiles, outcome.batchResult);
+            outcome.processedTransformers.add(transformer);
+            return outcome;
+        }
+    }
+
+    private static class ToolOutcome {
+
+        private final TusarNotifierBatchResult batchResult = new TusarNotifierBatchResult();
+
+        private final List<TusarNotifierTransformer> processedTransformers = new ArrayList<TusarNotifierTransformer>();
+
+        private List<String> messages;
+    }
+}
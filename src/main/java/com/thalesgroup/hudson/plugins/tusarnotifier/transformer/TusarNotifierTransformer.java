@@ -25,23 +25,58 @@ package com.thalesgroup.hudson.plugins.tusarnotifier.transformer;
 
 import com.google.inject.Inject;
 import com.thalesgroup.hudson.plugins.tusarnotifier.exception.TusarNotifierException;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarConversionPipeline;
 import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierConversionService;
 import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierLog;
 import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierReportProcessingService;
 import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarNotifierValidationService;
+import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarStreamingConverter;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.CustomInputMetric;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.PassthroughInputMetric;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierCompression;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierFileAttributes;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierThreadFactory;
 import hudson.FilePath;
 import hudson.util.IOException2;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Gregory Boissinot
  */
 public class TusarNotifierTransformer implements FilePath.FileCallable<Boolean>, Serializable {
 
+    /**
+     * Size from which a report is converted by fragments, or alone in the build when its tool has no streaming converter (64 MB by default)
+     */
+    private static final long LARGE_REPORT_SIZE = Long.getLong(TusarNotifierTransformer.class.getName() + ".largeReportSize", 64 * 1024 * 1024);
+
+    /**
+     * Only one large report is converted in memory at a time, shared by the tools of a build
+     */
+    private Semaphore largeReportPermit = new Semaphore(1, true);
+
+    /**
+     * The conversion permits shared by the tools of a build, null when the tool is only bounded by its own workers
+     */
+    private Semaphore workerPermits;
+
     private TusarNotifierReportProcessingService tusarNotifierReportProcessingService;
 
     private TusarNotifierConversionService tusarNotifierConversionService;
@@ -52,6 +87,18 @@ public class TusarNotifierTransformer implements FilePath.FileCallable<Boolean>,
 
     private TusarNotifierLog tusarNotifierLog;
 
+    private transient TusarToolStatistics statistics;
+
+    /**
+     * The report converted to each TUSAR file of the last processing, sorted by TUSAR file name
+     */
+    private transient SortedMap<String, String> outputs;
+
+    /**
+     * The attributes of the reports of the last processing, read once for all the checks of a report
+     */
+    private transient Map<String, TusarNotifierFileAttributes> reportAttributes;
+
     @Inject
     @SuppressWarnings("unused")
     void loadService(
@@ -67,54 +114,472 @@ public class TusarNotifierTransformer implements FilePath.FileCallable<Boolean>,
         this.tusarNotifierLog = tusarNotifierLog;
     }
 
+    public TusarToolInfo getTusarToolInfo() {
+        return tusarToolInfo;
+    }
+
+    /**
+     * Shares the permit of the large reports with the other tools of the build
+     *
+     * @param largeReportPermit the permit of the build
+     */
+    public void setLargeReportPermit(Semaphore largeReportPermit) {
+        this.largeReportPermit = largeReportPermit;
+    }
+
+    /**
+     * Shares the conversion permits with the other tools of the build, for a bound on the conversions of the whole build
+     *
+     * @param workerPermits the conversion permits of the build
+     */
+    public void setWorkerPermits(Semaphore workerPermits) {
+        this.workerPermits = workerPermits;
+    }
+
+    /**
+     * Checks if a report is valid for the tool, the validation errors aren't reported
+     *
+     * @param report the report
+     * @return true if the report is valid
+     */
+    public boolean isValidReport(File report) {
+        return tusarNotifierValidationService.isValidInputFile(tusarToolInfo, report);
+    }
+
     public Boolean invoke(File ws, hudson.remoting.VirtualChannel channel) throws IOException, InterruptedException {
 
         try {
-
             //Gets all input files matching the user pattern
             List<String> resultFiles = tusarNotifierReportProcessingService.findReports(tusarToolInfo, ws, tusarToolInfo.getExpandedPattern());
+            return transform(ws, resultFiles);
+        } finally {
+            //The buffered messages are written before the build goes on
+            tusarNotifierLog.flush();
+        }
+    }
+
+    /**
+     * Converts the reports of the tool already found in the workspace
+     *
+     * @param ws          the workspace
+     * @param resultFiles the reports matching the tool pattern, relative to the workspace
+     * @return true if all the reports have been converted, false otherwise
+     * @throws IOException          the conversion has failed
+     * @throws InterruptedException the build has been aborted
+     */
+    public boolean transform(File ws, List<String> resultFiles) throws IOException, InterruptedException {
+
+        statistics = new TusarToolStatistics();
+        outputs = Collections.synchronizedSortedMap(new TreeMap<String, String>());
+
+        try {
+
             if (resultFiles.size() == 0) {
                 return false;
             }
 
+            //A single pass on the file attributes, for the timestamp, the empty file and the conversion key checks
+            reportAttributes = tusarNotifierReportProcessingService.readAttributes(ws, resultFiles, getWorkerCount(resultFiles.size()));
+
             //Checks the timestamp for each test file if the UI option is checked (true by default)
-            if (!tusarNotifierReportProcessingService.checkIfFindsFilesNewFiles(tusarToolInfo, resultFiles, ws)) {
+            if (!tusarNotifierReportProcessingService.checkIfFindsFilesNewFiles(tusarToolInfo, resultFiles, ws, reportAttributes)) {
                 return false;
             }
 
-            for (String curFileName : resultFiles) {
+            //A custom stylesheet is compiled before the first report, a broken stylesheet stops the tool at once
+            tusarNotifierConversionService.prepareConversion(tusarToolInfo, ws);
 
-                File curFile = tusarNotifierReportProcessingService.getCurrentReport(ws, curFileName);
+            return processReports(ws, resultFiles);
 
-                if (!tusarNotifierValidationService.checkFileIsNotEmpty(curFile)) {
-                    //Ignore the empty result file (some reason)
-                    String msg = "The file '" + curFile.getPath() + "' is empty. This file has been ignored.";
-                    tusarNotifierLog.warning(msg);
-                    return false;
+        } catch (TusarNotifierException xe) {
+            throw new IOException2("There are some problems during the conversion into standard output: " + xe.getMessage(), xe);
+        }
+    }
+
+    /**
+     * Converts all the reports with a bounded pool of workers.
+     * The messages of each report are printed in the order of the report list. Without failure budget, the processing
+     * is stopped at the first report in error, as it would be with a sequential processing; with a failure budget,
+     * all the reports are processed and the tool fails only when the failed reports exceed the budget.
+     *
+     * @param ws          the workspace
+     * @param resultFiles the report list relative to the workspace
+     * @return true if all the reports have been converted, false otherwise
+     * @throws TusarNotifierException the first conversion error in the report order
+     * @throws InterruptedException   the build has been aborted
+     */
+    private boolean processReports(final File ws, List<String> resultFiles) throws TusarNotifierException, InterruptedException {
+
+        final TusarFailureBudget failureBudget = tusarToolInfo.getFailureBudget();
+
+        //Index of the first report in error, the following reports don't need to be processed without failure budget
+        final AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+        //The messages of the reports in error, written before their error is rethrown
+        final Map<Integer, List<String>> failureMessages = new ConcurrentHashMap<Integer, List<String>>();
+        ExecutorService executorService = Executors.newFixedThreadPool(getWorkerCount(resultFiles.size()), new TusarNotifierThreadFactory("TusarNotifier conversion worker"));
+        try {
+            List<Future<ReportResult>> futures = new ArrayList<Future<ReportResult>>(resultFiles.size());
+            for (int i = 0; i < resultFiles.size(); i++) {
+                final int index = i;
+                final String curFileName = resultFiles.get(i);
+                futures.add(executorService.submit(new Callable<ReportResult>() {
+                    public ReportResult call() throws Exception {
+                        if (failureBudget == null && firstFailure.get() < index) {
+                            return null;
+                        }
+                        tusarNotifierLog.startCapture();
+                        try {
+                            boolean success = processReportWithPermit(ws, curFileName);
+                            if (!success) {
+                                markFailure(firstFailure, index);
+                            }
+                            return new ReportResult(success, tusarNotifierLog.stopCapture());
+                        } catch (TusarNotifierException tne) {
+                            if (failureBudget != null) {
+                                //A conversion error is a failed report like the others
+                                tusarNotifierLog.error("The file '" + curFileName + "' can't be processed: " + tne.getMessage());
+                                return new ReportResult(false, tusarNotifierLog.stopCapture());
+                            }
+                            markFailure(firstFailure, index);
+                            failureMessages.put(index, tusarNotifierLog.stopCapture());
+                            throw tne;
+                        } catch (Exception e) {
+                            markFailure(firstFailure, index);
+                            failureMessages.put(index, tusarNotifierLog.stopCapture());
+                            throw e;
+                        }
+                    }
+                }));
+            }
+
+            int failures = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                ReportResult reportResult;
+                try {
+                    reportResult = futures.get(i).get();
+                } catch (ExecutionException ee) {
+                    List<String> messages = failureMessages.remove(i);
+                    if (messages != null) {
+                        tusarNotifierLog.flush(messages);
+                    }
+                    Throwable cause = ee.getCause();
+                    if (cause instanceof TusarNotifierException) {
+                        throw (TusarNotifierException) cause;
+                    }
+                    if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new TusarNotifierException(cause);
                 }
 
-                //Validates Input file
-                if (!tusarNotifierValidationService.validateInputFile(tusarToolInfo, curFile)) {
-                    tusarNotifierLog.warning("The file '" + curFile + "' has been ignored.");
+                tusarNotifierLog.flush(reportResult.getMessages());
+                if (!reportResult.isSuccess()) {
+                    if (failureBudget == null) {
+                        return false;
+                    }
+                    failures++;
+                }
+            }
+
+            if (failures != 0) {
+                String summary = failures + " of the " + resultFiles.size() + " report(s) have failed";
+                if (failureBudget.isExceeded(failures, resultFiles.size())) {
+                    tusarNotifierLog.error(summary + ", the failure budget of " + failureBudget + " is exceeded.");
                     return false;
                 }
+                tusarNotifierLog.warning(summary + ", within the failure budget of " + failureBudget + ".");
+            }
 
-                //Convert the input file
-                File tusarTargetFile = tusarNotifierConversionService.convert(tusarToolInfo, curFile, ws, tusarToolInfo.getOutputDir());
+        } finally {
+            executorService.shutdownNow();
+        }
 
+        return true;
+    }
 
-                //Validates converted file
-                boolean result = tusarNotifierValidationService.validateOutputFile(tusarToolInfo, curFile, tusarTargetFile);
-                if (!result) {
-                    return false;
+    private static void markFailure(AtomicInteger firstFailure, int index) {
+        int current = firstFailure.get();
+        while (index < current && !firstFailure.compareAndSet(current, index)) {
+            current = firstFailure.get();
+        }
+    }
+
+    private boolean processReportWithPermit(File ws, String curFileName) throws TusarNotifierException, InterruptedException {
+        if (workerPermits == null) {
+            return processReport(ws, curFileName);
+        }
+        workerPermits.acquire();
+        try {
+            return processReport(ws, curFileName);
+        } finally {
+            workerPermits.release();
+        }
+    }
+
+    private int getWorkerCount(int nbReports) {
+        int maxWorkers = tusarToolInfo.getMaxWorkers();
+        if (maxWorkers <= 0) {
+            maxWorkers = Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, Math.min(maxWorkers, nbReports));
+    }
+
+    private boolean processReport(File ws, String curFileName) throws TusarNotifierException, InterruptedException {
+
+        File curFile = tusarNotifierReportProcessingService.getCurrentReport(ws, curFileName);
+        TusarNotifierFileAttributes attributes = reportAttributes.get(curFileName);
+
+        TusarFileStatistics fileStatistics = new TusarFileStatistics(curFileName, attributes.getLength());
+        try {
+            if (!tusarNotifierValidationService.checkFileIsNotEmpty(attributes)) {
+                //Ignore the empty result file (some reason)
+                String msg = "The file '" + curFile.getPath() + "' is empty. This file has been ignored.";
+                tusarNotifierLog.warning(msg);
+                return false;
+            }
+
+            boolean success = processReport(ws, curFile, attributes, fileStatistics);
+            fileStatistics.setSuccess(success);
+            return success;
+        } finally {
+            statistics.addFile(fileStatistics);
+        }
+    }
+
+    private boolean processReport(File ws, File curFile, TusarNotifierFileAttributes attributes, TusarFileStatistics fileStatistics) throws TusarNotifierException, InterruptedException {
+
+        //Reuses a previous conversion of the same content
+        long start = System.nanoTime();
+        String conversionKey = tusarNotifierConversionService.getConversionKey(tusarToolInfo, curFile, attributes, ws);
+        if (conversionKey != null) {
+            File tusarTargetFile = tusarNotifierConversionService.restoreConversion(conversionKey, tusarToolInfo, curFile, ws, tusarToolInfo.getOutputDir());
+            if (tusarTargetFile != null) {
+                addOutput(tusarTargetFile, curFile, ws);
+                fileStatistics.setConversionTime(System.nanoTime() - start);
+                fileStatistics.setBytesOut(tusarTargetFile.length());
+                fileStatistics.setCached(true);
+                return true;
+            }
+        }
+
+        //The passthrough input metrics have a bounded memory use whatever the report size. The large reports of
+        //the tools with a streaming converter are converted by fragments, the stylesheet conversions of the other
+        //ones hold the whole report tree in memory: they are converted one at a time in the build.
+        //The size of a compressed report is the size of its decompressed content
+        long contentLength = TusarNotifierCompression.getContentLength(curFile);
+        if (contentLength >= LARGE_REPORT_SIZE && !(tusarToolInfo.getMetricsType().getInputMetric() instanceof PassthroughInputMetric)) {
+            boolean validInput = false;
+            TusarStreamingConverter streamingConverter = tusarNotifierConversionService.getStreamingConverter(tusarToolInfo);
+            if (streamingConverter != null && getCompression(curFile) == TusarNotifierCompression.Format.NONE) {
+                Boolean success = convertReportByFragments(ws, streamingConverter, curFile, conversionKey, fileStatistics);
+                if (success != null) {
+                    return success;
                 }
+                validInput = true;
             }
+            tusarNotifierLog.info("The file '" + curFile + "' (" + (contentLength / (1024 * 1024)) + " MB) is converted alone to bound the memory use.");
+            largeReportPermit.acquire();
+            try {
+                return convertReport(ws, curFile, conversionKey, fileStatistics, validInput);
+            } finally {
+                largeReportPermit.release();
+            }
+        }
 
-        } catch (TusarNotifierException xe) {
-            throw new IOException2("There are some problems during the conversion into standard output: " + xe.getMessage(), xe);
+        return convertReport(ws, curFile, conversionKey, fileStatistics, false);
+    }
+
+    /**
+     * Converts a large report by fragments
+     *
+     * @return the conversion success, or null if the report is valid but can't be converted by fragments
+     */
+    private Boolean convertReportByFragments(File ws, TusarStreamingConverter streamingConverter, File curFile, String conversionKey, TusarFileStatistics fileStatistics) throws TusarNotifierException {
+
+        //Validates Input file
+        long start = System.nanoTime();
+        boolean validInput = tusarNotifierValidationService.validateInputFile(tusarToolInfo, curFile);
+        fileStatistics.setValidateInputTime(System.nanoTime() - start);
+        if (!validInput) {
+            tusarNotifierLog.warning("The file '" + curFile + "' has been ignored.");
+            return false;
+        }
+
+        //Convert the input file
+        start = System.nanoTime();
+        File tusarTargetFile = tusarNotifierConversionService.convertByFragments(tusarToolInfo, streamingConverter, curFile, ws, tusarToolInfo.getOutputDir());
+        fileStatistics.setConversionTime(System.nanoTime() - start);
+        if (tusarTargetFile == null) {
+            tusarNotifierLog.info("The file '" + curFile + "' can't be converted by fragments.");
+            return null;
+        }
+
+        return recordOutput(ws, curFile, tusarTargetFile, conversionKey, fileStatistics);
+    }
+
+    private boolean convertReport(File ws, File curFile, String conversionKey, TusarFileStatistics fileStatistics, boolean validInput) throws TusarNotifierException {
+
+        TusarNotifierCompression.Format compression = getCompression(curFile);
+        if (compression == TusarNotifierCompression.Format.ZSTD) {
+            tusarNotifierLog.error("The file '" + curFile + "' is zstd compressed, only the gzip compressed reports are supported.");
+            return false;
+        }
+        boolean compressed = compression != TusarNotifierCompression.Format.NONE;
+
+        //A compressed report is decompressed while it is read, with the single pass pipeline
+        //when the stylesheet of the tool is a built-in one
+        if (!validInput && (tusarToolInfo.isSinglePass() || compressed)) {
+            TusarConversionPipeline pipeline = tusarNotifierConversionService.getPipeline(tusarToolInfo);
+            if (pipeline != null) {
+                return convertReportInSinglePass(ws, pipeline, curFile, conversionKey, fileStatistics);
+            }
+        }
+
+        if (compressed && !isCompressionSupported()) {
+            tusarNotifierLog.error("The file '" + curFile + "' is compressed, the tool '" + tusarToolInfo.getToolName() + "' can only convert plain reports.");
+            return false;
+        }
+
+        //Validates Input file, unless it has been validated before a conversion by fragments
+        if (!validInput) {
+            long start = System.nanoTime();
+            validInput = tusarNotifierValidationService.validateInputFile(tusarToolInfo, curFile);
+            fileStatistics.setValidateInputTime(System.nanoTime() - start);
+            if (!validInput) {
+                tusarNotifierLog.warning("The file '" + curFile + "' has been ignored.");
+                return false;
+            }
+        }
+
+        //Convert the input file
+        long start = System.nanoTime();
+        File tusarTargetFile = tusarNotifierConversionService.convert(tusarToolInfo, curFile, ws, tusarToolInfo.getOutputDir());
+        fileStatistics.setConversionTime(System.nanoTime() - start);
+
+        return recordOutput(ws, curFile, tusarTargetFile, conversionKey, fileStatistics);
+    }
+
+    /**
+     * Validates a converted file and records it as an output of the tool
+     *
+     * @return true if the converted file is valid
+     */
+    private boolean recordOutput(File ws, File curFile, File tusarTargetFile, String conversionKey, TusarFileStatistics fileStatistics) throws TusarNotifierException {
+        fileStatistics.setBytesOut(tusarTargetFile.length());
+
+        //Validates converted file
+        long start = System.nanoTime();
+        boolean validOutput = tusarNotifierValidationService.validateOutputFile(tusarToolInfo, curFile, tusarTargetFile);
+        fileStatistics.setValidateOutputTime(System.nanoTime() - start);
+        if (!validOutput) {
+            //The build may succeed within the failure budget, the invalid TUSAR file must not be recorded
+            if (tusarToolInfo.getFailureBudget() != null && !tusarTargetFile.delete()) {
+                tusarNotifierLog.warning("The invalid file '" + tusarTargetFile + "' can't be deleted.");
+            }
+            return false;
+        }
+
+        addOutput(tusarTargetFile, curFile, ws);
+        if (conversionKey != null) {
+            tusarNotifierConversionService.storeConversion(conversionKey, tusarTargetFile);
+        }
+        return true;
+    }
+
+    private TusarNotifierCompression.Format getCompression(File curFile) throws TusarNotifierException {
+        try {
+            return TusarNotifierCompression.detect(curFile);
+        } catch (IOException ioe) {
+            throw new TusarNotifierException("Can't read the file '" + curFile + "'", ioe);
         }
+    }
 
+    /**
+     * The passthrough and the custom input metrics read the reports as streams and decompress them,
+     * the other ones read the reports as files.
+     */
+    private boolean isCompressionSupported() {
+        Object inputMetric = tusarToolInfo.getMetricsType().getInputMetric();
+        return inputMetric instanceof PassthroughInputMetric || inputMetric instanceof CustomInputMetric;
+    }
+
+    private boolean convertReportInSinglePass(File ws, TusarConversionPipeline pipeline, File curFile, String conversionKey, TusarFileStatistics fileStatistics) throws TusarNotifierException {
+
+        //Validation times are part of the conversion time
+        long start = System.nanoTime();
+        File tusarTargetFile = tusarNotifierConversionService.convertInSinglePass(tusarToolInfo, pipeline, curFile, ws, tusarToolInfo.getOutputDir());
+        fileStatistics.setConversionTime(System.nanoTime() - start);
+        if (tusarTargetFile == null) {
+            return false;
+        }
+        fileStatistics.setBytesOut(tusarTargetFile.length());
+
+        addOutput(tusarTargetFile, curFile, ws);
+        if (conversionKey != null) {
+            tusarNotifierConversionService.storeConversion(conversionKey, tusarTargetFile);
+        }
         return true;
     }
 
+    private void addOutput(File tusarTargetFile, File curFile, File ws) {
+        outputs.put(tusarTargetFile.getName(), TusarNotifierConversionService.getRelativePath(curFile, ws));
+    }
+
+    /**
+     * Gets the TUSAR files of the last processing
+     *
+     * @return the report path relative to the workspace of each TUSAR file name, empty when no report has been processed
+     */
+    public SortedMap<String, String> getOutputs() {
+        if (outputs == null) {
+            return new TreeMap<String, String>();
+        }
+        synchronized (outputs) {
+            return new TreeMap<String, String>(outputs);
+        }
+    }
+
+    /**
+     * Gets the statistics of the last processing of the reports
+     *
+     * @return the statistics, or null when no report has been processed
+     */
+    public TusarToolStatistics getStatistics() {
+        return statistics;
+    }
+
+    public int getCacheHits() {
+        return tusarNotifierConversionService.getCacheHits();
+    }
+
+    public int getCacheMisses() {
+        return tusarNotifierConversionService.getCacheMisses();
+    }
+
+    /**
+     * The outcome and the messages of a report conversion
+     */
+    private static class ReportResult {
+
+        private final boolean success;
+
+        private final List<String> messages;
+
+        private ReportResult(boolean success, List<String> messages) {
+            this.success = success;
+            this.messages = messages;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public List<String> getMessages() {
+            return messages;
+        }
+    }
+
 }
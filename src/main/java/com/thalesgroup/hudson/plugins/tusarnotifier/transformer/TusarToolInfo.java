@@ -22,7 +22,9 @@
 
 package com.thalesgroup.hudson.plugins.tusarnotifier.transformer;
 
-import com.thalesgroup.dtkit.metrics.hudson.api.type.MetricsType;
+import com.thalesgroup.dtkit.metrics.hudson.api.type.*;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.CustomType;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierDigest;
 
 import java.io.File;
 import java.io.Serializable;
@@ -32,6 +34,11 @@ import java.io.Serializable;
  */
 public class TusarToolInfo implements Serializable {
 
+    /**
+     * The length of the hash of the tool configuration in the tool identifier
+     */
+    private static final int TOOL_HASH_LENGTH = 8;
+
     private File cusXSLFile;
 
     private final MetricsType metricsType;
@@ -42,11 +49,26 @@ public class TusarToolInfo implements Serializable {
 
     private final long buildTime;
 
-    public TusarToolInfo(MetricsType metricsType, File outputDir, String expandedPattern, long buildTime) {
+    private final int maxWorkers;
+
+    private final boolean singlePass;
+
+    private final TusarFailureBudget failureBudget;
+
+    private final int aggregateShards;
+
+    private final boolean validationErrorsFiles;
+
+    public TusarToolInfo(MetricsType metricsType, File outputDir, String expandedPattern, long buildTime, int maxWorkers, boolean singlePass, TusarFailureBudget failureBudget, int aggregateShards, boolean validationErrorsFiles) {
         this.metricsType = metricsType;
         this.outputDir = outputDir;
         this.expandedPattern = expandedPattern;
         this.buildTime = buildTime;
+        this.maxWorkers = maxWorkers;
+        this.singlePass = singlePass;
+        this.failureBudget = failureBudget;
+        this.aggregateShards = aggregateShards;
+        this.validationErrorsFiles = validationErrorsFiles;
     }
 
     public void setCusXSLFile(File cusXSLFile) {
@@ -61,6 +83,39 @@ public class TusarToolInfo implements Serializable {
         return metricsType;
     }
 
+    /**
+     * Gets the display name of the tool
+     *
+     * @return the display name of the metric type descriptor
+     */
+    public String getToolName() {
+        if (metricsType instanceof TestType) {
+            return ((TestType) metricsType).getDescriptor().getDisplayName();
+        }
+        if (metricsType instanceof CoverageType) {
+            return ((CoverageType) metricsType).getDescriptor().getDisplayName();
+        }
+        if (metricsType instanceof ViolationsType) {
+            return ((ViolationsType) metricsType).getDescriptor().getDisplayName();
+        }
+        if (metricsType instanceof MeasureType) {
+            return ((MeasureType) metricsType).getDescriptor().getDisplayName();
+        }
+        return null;
+    }
+
+    /**
+     * Gets an identifier of the tool usable in file names, the same on every node and for every build.
+     * The tools of the same type with other patterns or stylesheets have other identifiers.
+     *
+     * @return the simple name of the metric type class and a hash of the pattern and the stylesheet of the tool
+     */
+    public String getToolId() {
+        String customXSL = metricsType instanceof CustomType ? ((CustomType) metricsType).getCustomXSL() : null;
+        String configurationHash = TusarNotifierDigest.digest(metricsType.getPattern() + '\n' + customXSL).substring(0, TOOL_HASH_LENGTH);
+        return metricsType.getClass().getSimpleName().replaceAll("[^A-Za-z0-9_.-]", "_") + "-" + configurationHash;
+    }
+
     public File getOutputDir() {
         return outputDir;
     }
@@ -72,4 +127,49 @@ public class TusarToolInfo implements Serializable {
     public long getBuildTime() {
         return buildTime;
     }
+
+    /**
+     * Gets the maximum number of reports converted in parallel
+     *
+     * @return the worker count, 0 or less to use one worker per available processor
+     */
+    public int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    /**
+     * Checks if the reports are validated and converted in a single read, when the tool allows it
+     *
+     * @return true for a single pass conversion, false for separated steps
+     */
+    public boolean isSinglePass() {
+        return singlePass;
+    }
+
+    /**
+     * Gets the number of reports allowed to fail
+     *
+     * @return the failure budget, null to stop at the first failed report
+     */
+    public TusarFailureBudget getFailureBudget() {
+        return failureBudget;
+    }
+
+    /**
+     * Gets the number of shard files the TUSAR files of each category are merged into
+     *
+     * @return the shard count, 0 or less to keep one TUSAR file per report
+     */
+    public int getAggregateShards() {
+        return aggregateShards;
+    }
+
+    /**
+     * Checks if all the validation errors of a report are written to a compressed file of the output directory
+     *
+     * @return true to write the validation errors files, false to keep only the logged summary
+     */
+    public boolean isValidationErrorsFiles() {
+        return validationErrorsFiles;
+    }
 }
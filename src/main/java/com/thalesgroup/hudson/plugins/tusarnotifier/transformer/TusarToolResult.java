@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.transformer;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.io.Serializable;
+
+/**
+ * The outcome of the processing of a tool
+ */
+@ExportedBean(defaultVisibility = 2)
+public class TusarToolResult implements Serializable {
+
+    public enum Status {
+        /**
+         * All the reports of the tool have been converted
+         */
+        SUCCESS,
+        /**
+         * The reports of the tool have not been converted
+         */
+        FAILURE,
+        /**
+         * The tool has no pattern and has not been processed
+         */
+        SKIPPED
+    }
+
+    private final String toolName;
+
+    private final Status status;
+
+    private int cacheHits;
+
+    private int cacheMisses;
+
+    private long elapsedTime;
+
+    private TusarToolStatistics statistics;
+
+    public TusarToolResult(String toolName, Status status) {
+        this.toolName = toolName;
+        this.status = status;
+    }
+
+    public TusarToolResult(String toolName, Status status, int cacheHits, int cacheMisses, long elapsedTime, TusarToolStatistics statistics) {
+        this(toolName, status);
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.elapsedTime = elapsedTime;
+        this.statistics = statistics;
+    }
+
+    @Exported
+    public String getToolName() {
+        return toolName;
+    }
+
+    @Exported
+    public Status getStatus() {
+        return status;
+    }
+
+    @Exported
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    @Exported
+    public int getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * @return the elapsed time of the processing of the tool on the node, in milliseconds
+     */
+    @Exported
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * @return the statistics of the processed reports, null if no report has been processed
+     */
+    @Exported(inline = true)
+    public TusarToolStatistics getStatistics() {
+        return statistics;
+    }
+
+    public boolean isFailed() {
+        return status == Status.FAILURE;
+    }
+}
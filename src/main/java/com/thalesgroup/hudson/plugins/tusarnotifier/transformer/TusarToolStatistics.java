@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.transformer;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timings and the sizes of the processing of the reports of a tool, with the slowest reports.
+ * The statistics are collected on the node by the conversion workers.
+ */
+@ExportedBean(defaultVisibility = 2)
+public class TusarToolStatistics implements Serializable {
+
+    /**
+     * Number of slowest reports kept for each tool (10 by default)
+     */
+    private static final int MAX_SLOWEST_FILES = Integer.getInteger(TusarToolStatistics.class.getName() + ".slowestFiles", 10);
+
+    private int files;
+
+    private int cachedFiles;
+
+    private int failedFiles;
+
+    private long bytesIn;
+
+    private long bytesOut;
+
+    private long validateInputTime;
+
+    private long conversionTime;
+
+    private long validateOutputTime;
+
+    /**
+     * The slowest reports, the slowest first
+     */
+    private final List<TusarFileStatistics> slowestFiles = new ArrayList<TusarFileStatistics>();
+
+    /**
+     * Adds the statistics of a processed report
+     *
+     * @param fileStatistics the report statistics
+     */
+    public synchronized void addFile(TusarFileStatistics fileStatistics) {
+        files++;
+        if (fileStatistics.isCached()) {
+            cachedFiles++;
+        }
+        if (!fileStatistics.isSuccess()) {
+            failedFiles++;
+        }
+        bytesIn += fileStatistics.getBytesIn();
+        bytesOut += fileStatistics.getBytesOut();
+        validateInputTime += fileStatistics.getValidateInputNanos();
+        conversionTime += fileStatistics.getConversionNanos();
+        validateOutputTime += fileStatistics.getValidateOutputNanos();
+
+        int index = slowestFiles.size();
+        while (index > 0 && slowestFiles.get(index - 1).getTotalNanos() < fileStatistics.getTotalNanos()) {
+            index--;
+        }
+        if (index < MAX_SLOWEST_FILES) {
+            slowestFiles.add(index, fileStatistics);
+            if (slowestFiles.size() > MAX_SLOWEST_FILES) {
+                slowestFiles.remove(slowestFiles.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * @return the number of processed reports
+     */
+    @Exported
+    public synchronized int getFiles() {
+        return files;
+    }
+
+    /**
+     * @return the number of reports restored from the conversion cache
+     */
+    @Exported
+    public synchronized int getCachedFiles() {
+        return cachedFiles;
+    }
+
+    /**
+     * @return the number of reports empty, invalid or not converted
+     */
+    @Exported
+    public synchronized int getFailedFiles() {
+        return failedFiles;
+    }
+
+    @Exported
+    public synchronized long getBytesIn() {
+        return bytesIn;
+    }
+
+    @Exported
+    public synchronized long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * @return the cumulated validation time of the reports, in milliseconds
+     */
+    @Exported
+    public synchronized long getValidateInputTime() {
+        return TimeUnit.NANOSECONDS.toMillis(validateInputTime);
+    }
+
+    /**
+     * @return the cumulated conversion time of the reports, in milliseconds
+     */
+    @Exported
+    public synchronized long getConversionTime() {
+        return TimeUnit.NANOSECONDS.toMillis(conversionTime);
+    }
+
+    /**
+     * @return the cumulated validation time of the converted files, in milliseconds
+     */
+    @Exported
+    public synchronized long getValidateOutputTime() {
+        return TimeUnit.NANOSECONDS.toMillis(validateOutputTime);
+    }
+
+    /**
+     * @return the cumulated processing time of the reports, in milliseconds.
+     *         The reports are processed in parallel, this time can be greater than the elapsed time.
+     */
+    @Exported
+    public synchronized long getTotalTime() {
+        return TimeUnit.NANOSECONDS.toMillis(validateInputTime + conversionTime + validateOutputTime);
+    }
+
+    @Exported
+    public synchronized List<TusarFileStatistics> getSlowestFiles() {
+        return Collections.unmodifiableList(new ArrayList<TusarFileStatistics>(slowestFiles));
+    }
+}
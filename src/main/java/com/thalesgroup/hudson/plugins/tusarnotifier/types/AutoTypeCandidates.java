@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.types;
+
+import com.thalesgroup.dtkit.metrics.hudson.api.type.MetricsType;
+import com.thalesgroup.dtkit.metrics.hudson.model.*;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.coverage.TusarCoverageType;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.measure.TusarMeasureType;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.test.TusarTestType;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.violation.TusarViolationType;
+import hudson.model.Descriptor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates the tools an auto-detected type routes its reports to, with the pattern and the options of the
+ * auto-detected type. Each tool type has its own factory; a type without factory, such as a type of another
+ * plugin, isn't a candidate of the auto-detected types.
+ */
+public final class AutoTypeCandidates {
+
+    private interface Factory {
+
+        MetricsType newInstance(String pattern, boolean faildedIfNotNew, boolean deleteOutputFiles);
+    }
+
+    /**
+     * The factories by type class
+     */
+    private static final Map<Class<?>, Factory> factories = new HashMap<Class<?>, Factory>();
+
+    static {
+        factories.put(TusarTestType.class, new Factory() {
+            public MetricsType newInstance(String pattern, boolean faildedIfNotNew, boolean deleteOutputFiles) {
+                return new TusarTestType(pattern, faildedIfNotNew, deleteOutputFiles);
+            }
+        });
+        factories.put(TusarCoverageType.class, new Factory() {
+            public MetricsType newInstance(String pattern, boolean faildedIfNotNew, boolean deleteOutputFiles) {
+                return new TusarCoverageType(pattern, faildedIfNotNew, deleteOutputFiles);
+            }
+        });
+        factories.put(TusarViolationType.class, new Factory() {
+            public MetricsType newInstance(String pattern, boolean faildedIfNotNew, boolean deleteOutputFiles) {
+                return new TusarViolationType(pattern, faildedIfNotNew, deleteOutputFiles);
+            }
+        });
+        factories.put(TusarMeasureType.class, new Factory() {
+            public MetricsType newInstance(String pattern, boolean faildedIfNotNew, boolean deleteOutputFiles) {
+                return new TusarMeasureType(pattern, faildedIfNotNew, deleteOutputFiles);
+            }
+        });
+        factories.put(JUnitTusarHudsonTestType.class, new Factory() {
+            public MetricsType newInstance(String pattern, boolean faildedIfNotNew, boolean deleteOutputFiles) {
+                return new JUnitTusarHudsonTestType(pattern, faildedIfNotNew, deleteOutputFiles, false);
+            }
+        });
+        factories.put(CoberturaTusarHudsonCoverageType.class, new Factory() {
+            public MetricsType newInstance(String pattern, boolean faildedIfNotNew, boolean deleteOutputFiles) {
+                return new CoberturaTusarHudsonCoverageType(pattern, faildedIfNotNew, deleteOutputFiles, false);
+            }
+        });
+        factories.put(CheckstyleTusarHudsonViolationsType.class, new Factory() {
+            public MetricsType newInstance(String pattern, boolean faildedIfNotNew, boolean deleteOutputFiles) {
+                return new CheckstyleTusarHudsonViolationsType(pattern, faildedIfNotNew, deleteOutputFiles, false);
+            }
+        });
+        factories.put(CppcheckTusarHudsonViolationsType.class, new Factory() {
+            public MetricsType newInstance(String pattern, boolean faildedIfNotNew, boolean deleteOutputFiles) {
+                return new CppcheckTusarHudsonViolationsType(pattern, faildedIfNotNew, deleteOutputFiles, false);
+            }
+        });
+        factories.put(CppTestTusarHudsonViolationsType.class, new Factory() {
+            public MetricsType newInstance(String pattern, boolean faildedIfNotNew, boolean deleteOutputFiles) {
+                return new CppTestTusarHudsonViolationsType(pattern, faildedIfNotNew, deleteOutputFiles, false);
+            }
+        });
+        factories.put(KlocworkTusarHudsonViolationsType.class, new Factory() {
+            public MetricsType newInstance(String pattern, boolean faildedIfNotNew, boolean deleteOutputFiles) {
+                return new KlocworkTusarHudsonViolationsType(pattern, faildedIfNotNew, deleteOutputFiles, false);
+            }
+        });
+        factories.put(GnatmetricTusarHudsonMeasureType.class, new Factory() {
+            public MetricsType newInstance(String pattern, boolean faildedIfNotNew, boolean deleteOutputFiles) {
+                return new GnatmetricTusarHudsonMeasureType(pattern, faildedIfNotNew, deleteOutputFiles, false);
+            }
+        });
+    }
+
+    private AutoTypeCandidates() {
+    }
+
+    /**
+     * Creates a tool of a descriptor with the pattern and the options of an auto-detected type
+     *
+     * @param descriptor the descriptor of the tool type
+     * @param autoType   the auto-detected type
+     * @return the new tool, null if the type has no factory
+     */
+    public static MetricsType newCandidate(Descriptor<?> descriptor, MetricsType autoType) {
+        Factory factory = factories.get(descriptor.clazz);
+        if (factory == null) {
+            return null;
+        }
+        return factory.newInstance(autoType.getPattern(), autoType.isFaildedIfNotNew(), autoType.isDeleteOutputFiles());
+    }
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.types;
+
+import com.thalesgroup.dtkit.util.converter.ConversionException;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierCompression;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierFileTransfer;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierTemplatesCache;
+import hudson.FilePath;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.remoting.VirtualChannel;
+import hudson.util.FormValidation;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.*;
+import java.util.Map;
+
+/**
+ * Converts a file with a custom stylesheet compiled once and kept in the node cache
+ */
+public class CustomXSLConverter {
+
+    private CustomXSLConverter() {
+    }
+
+    /**
+     * Checks the custom stylesheet of a job from its configuration page.
+     * The stylesheet is compiled on the node of the workspace and stays in the node cache for the next builds.
+     *
+     * @param project the job
+     * @param value   the stylesheet path relative to the workspace
+     * @return the compilation time, or the compilation error
+     */
+    public static FormValidation checkCustomXSL(AbstractProject<?, ?> project, String value) throws IOException, InterruptedException {
+        if (value == null || value.trim().length() == 0) {
+            return FormValidation.error("A custom stylesheet is required.");
+        }
+        if (project == null || !project.hasPermission(Item.CONFIGURE)) {
+            return FormValidation.ok();
+        }
+        FilePath workspace = project.getSomeWorkspace();
+        if (workspace == null) {
+            return FormValidation.ok();
+        }
+        FilePath xslFile = workspace.child(value);
+        if (!xslFile.exists()) {
+            return FormValidation.warning("The stylesheet '" + value + "' doesn't exist in the workspace yet.");
+        }
+        try {
+            long compileTime = xslFile.act(new CompileCallable());
+            if (compileTime < 0) {
+                return FormValidation.ok("The stylesheet is already compiled on the node.");
+            }
+            return FormValidation.ok("The stylesheet has been compiled in " + compileTime + " ms.");
+        } catch (IOException ioe) {
+            return FormValidation.error("The stylesheet can't be compiled: " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Converts an input file with a custom stylesheet
+     *
+     * @param xslFile   the custom stylesheet
+     * @param inputFile the input file to convert, plain or gzip compressed
+     * @param outFile   the output file
+     * @param params    the xsl parameters, may be null
+     * @throws ConversionException the stylesheet can't be compiled or the transformation has failed
+     */
+    public static void convert(File xslFile, File inputFile, File outFile, Map<String, Object> params) throws ConversionException {
+        if (xslFile == null) {
+            throw new ConversionException("No custom stylesheet has been set for the conversion of " + inputFile);
+        }
+        try {
+            Transformer transformer = TusarNotifierTemplatesCache.getInstance().getTemplates(xslFile).newTransformer();
+            if (params != null) {
+                for (Map.Entry<String, Object> param : params.entrySet()) {
+                    transformer.setParameter(param.getKey(), param.getValue());
+                }
+            }
+            //The output is written aside and replaces the previous output, which is never rewritten in place
+            File tmpOutFile = TusarNotifierFileTransfer.getTempFile(outFile);
+            boolean written = false;
+            InputStream is = TusarNotifierCompression.open(inputFile);
+            try {
+                OutputStream os = new BufferedOutputStream(new FileOutputStream(tmpOutFile));
+                try {
+                    StreamSource source = new StreamSource(is);
+                    source.setSystemId(inputFile);
+                    transformer.transform(source, new StreamResult(os));
+                } finally {
+                    os.close();
+                }
+                written = true;
+            } finally {
+                is.close();
+                if (!written) {
+                    tmpOutFile.delete();
+                }
+            }
+            TusarNotifierFileTransfer.replace(tmpOutFile, outFile);
+        } catch (TransformerException te) {
+            throw new ConversionException("Conversion error occur- Can't convert the file " + inputFile + " with the stylesheet " + xslFile, te);
+        } catch (IOException ioe) {
+            throw new ConversionException("Conversion error occur- Can't convert the file " + inputFile + " to " + outFile, ioe);
+        }
+    }
+
+    /**
+     * Compiles a stylesheet into the node cache
+     */
+    private static class CompileCallable implements FilePath.FileCallable<Long> {
+
+        /**
+         * @return the compilation time in milliseconds, -1 if the stylesheet was already compiled
+         */
+        public Long invoke(File xslFile, VirtualChannel channel) throws IOException {
+            TusarNotifierTemplatesCache templatesCache = TusarNotifierTemplatesCache.getInstance();
+            if (templatesCache.isCompiled(xslFile)) {
+                return -1L;
+            }
+            long start = System.currentTimeMillis();
+            try {
+                templatesCache.getTemplates(xslFile);
+            } catch (TransformerConfigurationException tce) {
+                throw new IOException(tce.getMessageAndLocation());
+            }
+            return System.currentTimeMillis() - start;
+        }
+    }
+}
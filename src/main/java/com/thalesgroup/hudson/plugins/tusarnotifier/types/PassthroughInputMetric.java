@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.types;
+
+import com.thalesgroup.dtkit.util.converter.ConversionException;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierFileTransfer;
+
+import java.io.File;
+
+/**
+ * An input metric whose conversion only materializes the input file in the output directory
+ */
+public interface PassthroughInputMetric {
+
+    /**
+     * Materializes an input file as output file
+     *
+     * @param inputFile the input file
+     * @param outFile   the output file
+     * @return how the file has been materialized
+     * @throws ConversionException the input file can't be materialized
+     */
+    public TusarNotifierFileTransfer.Strategy transfer(File inputFile, File outFile) throws ConversionException;
+
+}
@@ -0,0 +1,468 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.types;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.CharBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes a TUSAR document as a UTF-8 stream.
+ * <p/>
+ * The memory use of the writer depends only on the nesting depth of the document: the writer keeps
+ * the names of the open elements and the namespaces they declare, the content goes through an output
+ * buffer taken from a pool shared by all the writers. The characters are encoded without charset encoder,
+ * the ASCII characters needing no escape are copied as they are. The characters that XML 1.0 doesn't allow,
+ * control characters and unpaired surrogates, are replaced by U+FFFD.
+ * <p/>
+ * The namespaces of the elements and of the attributes are declared when they aren't bound yet, the namespaces
+ * of an element must be written before its attributes.
+ */
+public class TusarStreamWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = Integer.getInteger(TusarStreamWriter.class.getName() + ".bufferSize", 64 * 1024);
+
+    private static final int MAX_POOLED_BUFFERS = Integer.getInteger(TusarStreamWriter.class.getName() + ".maxPooledBuffers", 16);
+
+    private static final Queue<byte[]> bufferPool = new ConcurrentLinkedQueue<byte[]>();
+
+    private static final int RAW = 0;
+
+    private static final int TEXT = 1;
+
+    private static final int ATTRIBUTE = 2;
+
+    /**
+     * The replacement of each ASCII character in text and in attribute values, null when it is written as it is
+     */
+    private static final String[][] ESCAPES = new String[3][128];
+
+    static {
+        for (int mode = TEXT; mode <= ATTRIBUTE; mode++) {
+            ESCAPES[mode]['&'] = "&amp;";
+            ESCAPES[mode]['<'] = "&lt;";
+            ESCAPES[mode]['>'] = "&gt;";
+            ESCAPES[mode]['\r'] = "&#13;";
+        }
+        ESCAPES[ATTRIBUTE]['"'] = "&quot;";
+        ESCAPES[ATTRIBUTE]['\t'] = "&#9;";
+        ESCAPES[ATTRIBUTE]['\n'] = "&#10;";
+    }
+
+    private final OutputStream os;
+
+    private byte[] buffer;
+
+    private int position;
+
+    private String[] elementNames = new String[16];
+
+    private int depth;
+
+    private boolean startTagOpen;
+
+    private String pendingPrefix;
+
+    private String pendingNamespaceURI;
+
+    private String[] prefixes = new String[16];
+
+    private String[] namespaceURIs = new String[16];
+
+    private int namespaceCount;
+
+    private int[] namespaceScopes = new int[16];
+
+    public TusarStreamWriter(OutputStream os) {
+        this.os = os;
+        byte[] pooledBuffer = bufferPool.poll();
+        this.buffer = pooledBuffer == null ? new byte[BUFFER_SIZE] : pooledBuffer;
+    }
+
+    /**
+     * Writes the XML declaration
+     */
+    public void writeStartDocument() throws IOException {
+        write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n", RAW);
+    }
+
+    /**
+     * Opens an element
+     *
+     * @param prefix       the prefix of the element, empty for the default namespace
+     * @param localName    the local name of the element
+     * @param namespaceURI the namespace of the element, empty for no namespace
+     */
+    public void writeStartElement(String prefix, String localName, String namespaceURI) throws IOException {
+        closeStartTag();
+        String name = prefix.length() == 0 ? localName : prefix + ':' + localName;
+        if (depth == elementNames.length) {
+            elementNames = grow(elementNames);
+            namespaceScopes = grow(namespaceScopes);
+        }
+        elementNames[depth] = name;
+        namespaceScopes[depth] = namespaceCount;
+        depth++;
+        write('<');
+        write(name, RAW);
+        startTagOpen = true;
+        pendingPrefix = prefix;
+        pendingNamespaceURI = namespaceURI;
+    }
+
+    /**
+     * Declares a namespace on the open start tag
+     *
+     * @param prefix       the prefix, empty for the default namespace
+     * @param namespaceURI the namespace
+     */
+    public void writeNamespace(String prefix, String namespaceURI) throws IOException {
+        checkStartTag();
+        if (namespaceURI.equals(getNamespaceURI(prefix))) {
+            return;
+        }
+        if (namespaceCount == prefixes.length) {
+            prefixes = grow(prefixes);
+            namespaceURIs = grow(namespaceURIs);
+        }
+        prefixes[namespaceCount] = prefix;
+        namespaceURIs[namespaceCount] = namespaceURI;
+        namespaceCount++;
+        write(prefix.length() == 0 ? " xmlns=\"" : " xmlns:", RAW);
+        if (prefix.length() != 0) {
+            write(prefix, RAW);
+            write("=\"", RAW);
+        }
+        write(namespaceURI, ATTRIBUTE);
+        write('"');
+    }
+
+    /**
+     * Writes an attribute on the open start tag
+     *
+     * @param prefix       the prefix of the attribute, empty for no namespace
+     * @param localName    the local name of the attribute
+     * @param namespaceURI the namespace of the attribute, empty for no namespace
+     * @param value        the value
+     */
+    public void writeAttribute(String prefix, String localName, String namespaceURI, String value) throws IOException {
+        checkStartTag();
+        if (prefix.length() != 0 && !XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+            writeNamespace(prefix, namespaceURI);
+        }
+        write(' ');
+        if (prefix.length() != 0) {
+            write(prefix, RAW);
+            write(':');
+        }
+        write(localName, RAW);
+        write("=\"", RAW);
+        write(value, ATTRIBUTE);
+        write('"');
+    }
+
+    public void writeCharacters(String text) throws IOException {
+        closeStartTag();
+        write(text, TEXT);
+    }
+
+    public void writeCharacters(char[] text, int start, int length) throws IOException {
+        closeStartTag();
+        write(CharBuffer.wrap(text, start, length), TEXT);
+    }
+
+    /**
+     * Writes a CDATA section, split where the data contains the end of a CDATA section
+     */
+    public void writeCData(String data) throws IOException {
+        closeStartTag();
+        write("<![CDATA[", RAW);
+        int start = 0;
+        int end;
+        while ((end = data.indexOf("]]>", start)) != -1) {
+            write(data.substring(start, end + 2), RAW);
+            write("]]><![CDATA[", RAW);
+            start = end + 2;
+        }
+        write(data.substring(start), RAW);
+        write("]]>", RAW);
+    }
+
+    /**
+     * Writes a comment, a space is inserted after each hyphen followed by another hyphen or ending the comment
+     */
+    public void writeComment(String comment) throws IOException {
+        closeStartTag();
+        write("<!--", RAW);
+        int start = 0;
+        int hyphen = comment.indexOf('-');
+        while (hyphen != -1) {
+            if (hyphen + 1 == comment.length() || comment.charAt(hyphen + 1) == '-') {
+                write(comment.substring(start, hyphen + 1), RAW);
+                write(' ');
+                start = hyphen + 1;
+            }
+            hyphen = comment.indexOf('-', hyphen + 1);
+        }
+        write(comment.substring(start), RAW);
+        write("-->", RAW);
+    }
+
+    public void writeProcessingInstruction(String target, String data) throws IOException {
+        closeStartTag();
+        write("<?", RAW);
+        write(target, RAW);
+        if (data != null && data.length() != 0) {
+            write(' ');
+            write(data, RAW);
+        }
+        write("?>", RAW);
+    }
+
+    public void writeEntityRef(String name) throws IOException {
+        closeStartTag();
+        write('&');
+        write(name, RAW);
+        write(';');
+    }
+
+    /**
+     * Closes the last open element, an element without content is written as an empty element
+     */
+    public void writeEndElement() throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("No element is open.");
+        }
+        depth--;
+        if (startTagOpen) {
+            declarePendingNamespace();
+            write("/>", RAW);
+            startTagOpen = false;
+        } else {
+            write("</", RAW);
+            write(elementNames[depth], RAW);
+            write('>');
+        }
+        elementNames[depth] = null;
+        namespaceCount = namespaceScopes[depth];
+    }
+
+    /**
+     * Closes all the open elements
+     */
+    public void writeEndDocument() throws IOException {
+        while (depth != 0) {
+            writeEndElement();
+        }
+        write('\n');
+    }
+
+    /**
+     * Copies the current event of a reader, the start element with its namespaces and its attributes.
+     * The document events (start and end of document, DTD) aren't copied.
+     *
+     * @param reader the reader
+     */
+    public void copyEvent(XMLStreamReader reader) throws IOException {
+        switch (reader.getEventType()) {
+            case XMLStreamConstants.START_ELEMENT:
+                writeStartElement(toString(reader.getPrefix()), reader.getLocalName(), toString(reader.getNamespaceURI()));
+                for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                    writeNamespace(toString(reader.getNamespacePrefix(i)), toString(reader.getNamespaceURI(i)));
+                }
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    writeAttribute(toString(reader.getAttributePrefix(i)), reader.getAttributeLocalName(i), toString(reader.getAttributeNamespace(i)), reader.getAttributeValue(i));
+                }
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                writeEndElement();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                break;
+            case XMLStreamConstants.CDATA:
+                writeCData(reader.getText());
+                break;
+            case XMLStreamConstants.COMMENT:
+                writeComment(reader.getText());
+                break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+                break;
+            case XMLStreamConstants.ENTITY_REFERENCE:
+                writeEntityRef(reader.getLocalName());
+                break;
+            default:
+                break;
+        }
+    }
+
+    public void flush() throws IOException {
+        checkOpen();
+        closeStartTag();
+        flushBuffer();
+        os.flush();
+    }
+
+    /**
+     * Flushes the content and closes the stream, the output buffer goes back to the pool
+     */
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            if (bufferPool.size() < MAX_POOLED_BUFFERS) {
+                bufferPool.offer(buffer);
+            }
+            buffer = null;
+            os.close();
+        }
+    }
+
+    private String getNamespaceURI(String prefix) {
+        for (int i = namespaceCount - 1; i >= 0; i--) {
+            if (prefixes[i].equals(prefix)) {
+                return namespaceURIs[i];
+            }
+        }
+        if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+            return XMLConstants.XML_NS_URI;
+        }
+        return prefix.length() == 0 ? "" : null;
+    }
+
+    private void checkStartTag() {
+        if (!startTagOpen) {
+            throw new IllegalStateException("No start tag is open.");
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (buffer == null) {
+            throw new IOException("The writer is closed.");
+        }
+    }
+
+    private void closeStartTag() throws IOException {
+        if (startTagOpen) {
+            declarePendingNamespace();
+            write('>');
+            startTagOpen = false;
+        }
+    }
+
+    private void declarePendingNamespace() throws IOException {
+        if (!pendingNamespaceURI.equals(getNamespaceURI(pendingPrefix))) {
+            writeNamespace(pendingPrefix, pendingNamespaceURI);
+        }
+    }
+
+    private void write(char c) throws IOException {
+        checkOpen();
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) c;
+    }
+
+    private void write(CharSequence text, int mode) throws IOException {
+        checkOpen();
+        String[] escapes = ESCAPES[mode];
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (position + 8 > buffer.length) {
+                flushBuffer();
+            }
+            char c = text.charAt(i);
+            if (c < 0x20 && c != '\t' && c != '\n' && c != '\r') {
+                writeReplacement();
+            } else if (c < 0x80) {
+                String escape = escapes[c];
+                if (escape == null) {
+                    buffer[position++] = (byte) c;
+                } else {
+                    for (int j = 0; j < escape.length(); j++) {
+                        buffer[position++] = (byte) escape.charAt(j);
+                    }
+                }
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xc0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if ((c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) || c == 0xfffe || c == 0xffff) {
+                writeReplacement();
+            } else {
+                buffer[position++] = (byte) (0xe0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    /**
+     * Writes U+FFFD in place of a character XML 1.0 doesn't allow
+     */
+    private void writeReplacement() {
+        buffer[position++] = (byte) 0xef;
+        buffer[position++] = (byte) 0xbf;
+        buffer[position++] = (byte) 0xbd;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position != 0) {
+            os.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private static String toString(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String[] grow(String[] array) {
+        String[] newArray = new String[array.length * 2];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] newArray = new int[array.length * 2];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+}
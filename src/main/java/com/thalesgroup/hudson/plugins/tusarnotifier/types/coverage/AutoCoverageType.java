@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.types.coverage;
+
+import com.thalesgroup.dtkit.metrics.hudson.api.descriptor.CoverageTypeDescriptor;
+import com.thalesgroup.dtkit.metrics.hudson.api.type.CoverageType;
+import com.thalesgroup.dtkit.metrics.model.InputMetric;
+import com.thalesgroup.dtkit.metrics.model.InputMetricException;
+import com.thalesgroup.dtkit.metrics.model.InputMetricFactory;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.AutoType;
+import hudson.Extension;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * The coverage reports matching the pattern are routed by their content to the other coverage tools
+ */
+@SuppressWarnings("unused")
+public class AutoCoverageType extends CoverageType implements AutoType {
+
+    private static AutoCoverageTypeDescriptor DESCRIPTOR = new AutoCoverageTypeDescriptor();
+
+    @DataBoundConstructor
+    @SuppressWarnings("unused")
+    public AutoCoverageType(String pattern, boolean faildedIfNotNew, boolean deleteOutputFiles) {
+        super(pattern, faildedIfNotNew, deleteOutputFiles);
+    }
+
+    public CoverageTypeDescriptor<? extends CoverageType> getDescriptor() {
+        return DESCRIPTOR;
+    }
+
+    @Extension
+    public static class AutoCoverageTypeDescriptor extends CoverageTypeDescriptor<AutoCoverageType> {
+
+        public AutoCoverageTypeDescriptor() {
+            super(AutoCoverageType.class, null);
+        }
+
+        @Override
+        public String getId() {
+            return this.getClass().getName();
+        }
+
+        @Override
+        public InputMetric getInputMetric() {
+            try {
+                return InputMetricFactory.getInstance(AutoCoverageInputMetric.class);
+            } catch (InputMetricException e) {
+                throw new RuntimeException("Can't create the inputMetric object for the class " + AutoCoverageInputMetric.class);
+            }
+        }
+    }
+}
@@ -28,8 +28,15 @@ import com.thalesgroup.dtkit.metrics.model.InputMetric;
 import com.thalesgroup.dtkit.metrics.model.InputMetricException;
 import com.thalesgroup.dtkit.metrics.model.InputMetricFactory;
 import com.thalesgroup.hudson.plugins.tusarnotifier.types.CustomType;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.CustomXSLConverter;
 import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.util.FormValidation;
+import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.io.IOException;
 
 @SuppressWarnings("unused")
 public class CustomCoverageType extends CoverageType implements CustomType {
@@ -79,5 +86,10 @@ public class CustomCoverageType extends CoverageType implements CustomType {
         public boolean isCustomType() {
             return true;
         }
+
+        @SuppressWarnings("unused")
+        public FormValidation doCheckCustomXSL(@AncestorInPath AbstractProject<?, ?> project, @QueryParameter String value) throws IOException, InterruptedException {
+            return CustomXSLConverter.checkCustomXSL(project, value);
+        }
     }
 }
\ No newline at end of file
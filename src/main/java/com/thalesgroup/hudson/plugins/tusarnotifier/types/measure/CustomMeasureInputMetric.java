@@ -26,9 +26,12 @@ package com.thalesgroup.hudson.plugins.tusarnotifier.types.measure;
 import com.thalesgroup.dtkit.metrics.model.InputMetricXSL;
 import com.thalesgroup.dtkit.metrics.model.InputType;
 import com.thalesgroup.dtkit.metrics.model.OutputMetric;
+import com.thalesgroup.dtkit.util.converter.ConversionException;
 import com.thalesgroup.hudson.plugins.tusarnotifier.types.CustomInputMetric;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.CustomXSLConverter;
 
 import java.io.File;
+import java.util.Map;
 
 /**
  * @author Gregory Boissinot
@@ -81,4 +84,17 @@ public class CustomMeasureInputMetric extends InputMetricXSL implements CustomIn
     public OutputMetric getOutputFormatType() {
         return null;
     }
+
+    /**
+     * Converts the input file with the custom stylesheet compiled once for the node
+     *
+     * @param inputFile the input file to convert
+     * @param outFile   the output file to convert
+     * @param params    the xsl parameters
+     * @throws ConversionException the conversion has failed
+     */
+    @Override
+    public void convert(File inputFile, File outFile, Map<String, Object> params) throws ConversionException {
+        CustomXSLConverter.convert(customXSLFile, inputFile, outFile, params);
+    }
 }
@@ -27,7 +27,8 @@ import com.thalesgroup.dtkit.metrics.model.InputType;
 import com.thalesgroup.dtkit.util.converter.ConversionException;
 import com.thalesgroup.dtkit.util.validator.ValidationException;
 import com.thalesgroup.hudson.plugins.tusarnotifier.service.TusarFormatValidation;
-import org.apache.commons.io.FileUtils;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.PassthroughInputMetric;
+import com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierFileTransfer;
 
 import java.io.File;
 import java.io.IOException;
@@ -37,7 +38,7 @@ import java.util.Map;
 /**
  * @author Gregory Boissinot
  */
-public class TusarMeasureInputMetric extends InputMetricOther {
+public class TusarMeasureInputMetric extends InputMetricOther implements PassthroughInputMetric {
 
     @Override
     public InputType getToolType() {
@@ -68,10 +69,20 @@ public class TusarMeasureInputMetric extends InputMetricOther {
      */
     @Override
     public void convert(File inputFile, File outFile, Map<String, Object> params) throws ConversionException {
+        transfer(inputFile, outFile);
+    }
 
-        //Copy input to output
+    /**
+     * Materializes the input as output (link, copy or decompression)
+     *
+     * @param inputFile the input file
+     * @param outFile   the output file
+     * @return the strategy that has been used
+     * @throws ConversionException the input can't be materialized
+     */
+    public TusarNotifierFileTransfer.Strategy transfer(File inputFile, File outFile) throws ConversionException {
         try {
-            FileUtils.copyFile(inputFile, outFile, false);
+            return TusarNotifierFileTransfer.transferContent(inputFile, outFile);
         } catch (IOException ioe) {
             throw new ConversionException("Conversion error occur- Can't copy file from " + inputFile + "to " + outFile, ioe);
         }
@@ -94,7 +105,8 @@ public class TusarMeasureInputMetric extends InputMetricOther {
      */
     @Override
     public boolean validateOutputFile(File inputXMLFile) throws ValidationException {
-        return validateInputFile(inputXMLFile);
+        //The output is a copy of the validated input, its content is only checked against the validated contents
+        return new TusarFormatValidation().isVerifiedTusarFormat(inputXMLFile);
     }
 
 }
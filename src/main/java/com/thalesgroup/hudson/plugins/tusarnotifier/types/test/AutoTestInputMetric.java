@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.types.test;
+
+import com.thalesgroup.dtkit.metrics.model.InputMetricOther;
+import com.thalesgroup.dtkit.metrics.model.InputType;
+import com.thalesgroup.dtkit.util.converter.ConversionException;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * The input metric of the auto-detected test reports, the reports are converted by the tool they are routed to
+ */
+public class AutoTestInputMetric extends InputMetricOther {
+
+    @Override
+    public InputType getToolType() {
+        return InputType.TEST;
+    }
+
+    @Override
+    public String getToolName() {
+        return "Auto-detected";
+    }
+
+    @Override
+    public void convert(File inputFile, File outFile, Map<String, Object> params) throws ConversionException {
+        throw new ConversionException("The file " + inputFile + " must be converted by the tool recognizing its content.");
+    }
+
+    @Override
+    public boolean validateInputFile(File inputXMLFile) {
+        return false;
+    }
+
+    @Override
+    public boolean validateOutputFile(File inputXMLFile) {
+        return false;
+    }
+}
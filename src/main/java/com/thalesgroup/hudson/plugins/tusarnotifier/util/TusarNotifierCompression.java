@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.util;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * Detects the compressed reports from their first bytes and decompresses them while they are read,
+ * a compressed report is never inflated to a temporary file
+ */
+public class TusarNotifierCompression {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Format {
+
+        NONE("none"),
+        GZIP("gzip"),
+        ZSTD("zstd");
+
+        private final String description;
+
+        Format(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    private TusarNotifierCompression() {
+    }
+
+    /**
+     * Detects the compression of a file from its magic bytes, the file extension is not used
+     *
+     * @param file the file
+     * @return the compression format, NONE for a plain file
+     * @throws IOException the file can't be read
+     */
+    public static Format detect(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            return detect(readMagic(is));
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Checks if a file is compressed
+     *
+     * @param file the file
+     * @return true if the file is gzip or zstd compressed, false if it is a plain file or can't be read
+     */
+    public static boolean isCompressed(File file) {
+        try {
+            return detect(file) != Format.NONE;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens a buffered stream on the decompressed content of a file, a plain file is read as it is
+     *
+     * @param file the file
+     * @return the stream on the content
+     * @throws IOException the file can't be read or its compression is not supported
+     */
+    public static InputStream open(File file) throws IOException {
+        InputStream is = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try {
+            is.mark(4);
+            Format format = detect(readMagic(is));
+            is.reset();
+            switch (format) {
+                case GZIP:
+                    return new BufferedInputStream(new GZIPInputStream(is, BUFFER_SIZE), BUFFER_SIZE);
+                case ZSTD:
+                    throw new IOException("The file " + file + " is zstd compressed, zstd is not supported. Use gzip to compress the reports.");
+                default:
+                    return is;
+            }
+        } catch (IOException ioe) {
+            is.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Gives the length of the content of a file once decompressed.
+     * For a gzip file, the length is read from the gzip trailer (modulo 4GB)
+     *
+     * @param file the file
+     * @return the length of the content
+     */
+    public static long getContentLength(File file) {
+        long length = file.length();
+        try {
+            if (length < 18 || detect(file) != Format.GZIP) {
+                return length;
+            }
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                raf.seek(length - 4);
+                long size = (raf.read() & 0xff) | (raf.read() & 0xff) << 8 | (raf.read() & 0xff) << 16 | ((long) (raf.read() & 0xff)) << 24;
+                return Math.max(size, length);
+            } finally {
+                raf.close();
+            }
+        } catch (IOException ioe) {
+            return length;
+        }
+    }
+
+    /**
+     * Writes the decompressed content of a file to a target file, an existing target file is replaced
+     *
+     * @param source the compressed file
+     * @param target the target file
+     * @throws IOException the file can't be decompressed or written
+     */
+    public static void decompress(File source, File target) throws IOException {
+        InputStream is = open(source);
+        try {
+            OutputStream os = new FileOutputStream(target);
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = is.read(buffer)) != -1) {
+                    os.write(buffer, 0, n);
+                }
+            } finally {
+                os.close();
+            }
+        } finally {
+            is.close();
+        }
+    }
+
+    private static byte[] readMagic(InputStream is) throws IOException {
+        byte[] magic = new byte[4];
+        int read = 0;
+        while (read < magic.length) {
+            int n = is.read(magic, read, magic.length - read);
+            if (n == -1) {
+                break;
+            }
+            read += n;
+        }
+        if (read < magic.length) {
+            byte[] truncated = new byte[read];
+            System.arraycopy(magic, 0, truncated, 0, read);
+            return truncated;
+        }
+        return magic;
+    }
+
+    private static Format detect(byte[] magic) {
+        if (magic.length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return Format.GZIP;
+        }
+        if (magic.length >= 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5
+                && (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd) {
+            return Format.ZSTD;
+        }
+        return Format.NONE;
+    }
+}
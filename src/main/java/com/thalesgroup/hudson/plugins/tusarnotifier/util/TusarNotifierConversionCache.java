@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.util;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A persistent cache of the node holding the TUSAR files of the conversions already done.
+ * <p/>
+ * An entry is identified by a key computed from the tool, the converter version and the input
+ * content. The least recently used entries are removed when the cache exceeds its size.
+ * The cache is enabled by the system property
+ * <code>com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierConversionCache.maxSize</code>
+ * (in bytes, 0 by default: the cache is disabled), its location is given by
+ * <code>com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierConversionCache.dir</code>
+ * (the .tusarnotifier/cache directory of the home directory of the node user by default).
+ * <p/>
+ * The restored entries become TUSAR files of the builds: the cache directory is only readable and writable by its
+ * owner, and the cache is not used when these permissions can't be set.
+ */
+public class TusarNotifierConversionCache {
+
+    private static final String ENTRY_SUFFIX = ".xml";
+
+    private static final TusarNotifierConversionCache INSTANCE = new TusarNotifierConversionCache(
+            new File(System.getProperty(TusarNotifierConversionCache.class.getName() + ".dir",
+                    new File(System.getProperty("user.home"), ".tusarnotifier" + File.separator + "cache").getPath())),
+            Long.getLong(TusarNotifierConversionCache.class.getName() + ".maxSize", 0));
+
+    private final File cacheDir;
+
+    private final long maxSize;
+
+    /**
+     * The size of the cache entries, -1 until the cache directory has been read
+     */
+    private final AtomicLong size = new AtomicLong(-1);
+
+    /**
+     * True when the cache directory exists with the owner only permissions, null until it has been checked
+     */
+    private Boolean usable;
+
+    TusarNotifierConversionCache(File cacheDir, long maxSize) {
+        this.cacheDir = cacheDir;
+        this.maxSize = maxSize;
+    }
+
+    public static TusarNotifierConversionCache getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Materializes a cached conversion
+     *
+     * @param key    the conversion key
+     * @param target the file to create with the cached content
+     * @return true if the conversion was in the cache, false otherwise
+     */
+    public boolean restore(String key, File target) {
+        if (!isUsable()) {
+            return false;
+        }
+        File entry = new File(cacheDir, key + ENTRY_SUFFIX);
+        if (!entry.isFile()) {
+            return false;
+        }
+        //A copy and not a link: the target is a TUSAR file of the workspace, the next conversion of the same
+        //report replaces it and a shared content would change the entry for the next builds
+        File tmpTarget = TusarNotifierFileTransfer.getTempFile(target);
+        try {
+            TusarNotifierFileTransfer.copy(entry, tmpTarget);
+            TusarNotifierFileTransfer.replace(tmpTarget, target);
+        } catch (IOException ioe) {
+            tmpTarget.delete();
+            return false;
+        }
+        //Marks the entry as recently used
+        entry.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Stores a conversion in the cache
+     *
+     * @param key    the conversion key
+     * @param source the TUSAR file of the conversion
+     */
+    public void store(String key, File source) {
+        //An entry larger than the cache would evict all the other entries
+        if (source.length() > maxSize || !isUsable()) {
+            return;
+        }
+        File entry = new File(cacheDir, key + ENTRY_SUFFIX);
+        if (entry.isFile()) {
+            return;
+        }
+
+        File tmpEntry = new File(cacheDir, key + "." + Thread.currentThread().getId() + "-" + System.nanoTime() + ".tmp");
+        try {
+            //A copy and not a link, the cached content must not follow a later modification of the source
+            TusarNotifierFileTransfer.copy(source, tmpEntry);
+            if (!tmpEntry.renameTo(entry)) {
+                tmpEntry.delete();
+                return;
+            }
+        } catch (IOException ioe) {
+            tmpEntry.delete();
+            return;
+        }
+
+        if (getSize() + entry.length() > maxSize) {
+            evict();
+        } else {
+            size.addAndGet(entry.length());
+        }
+    }
+
+    /**
+     * Removes an entry, for instance an entry whose content isn't valid anymore
+     *
+     * @param key the conversion key
+     */
+    public void remove(String key) {
+        File entry = new File(cacheDir, key + ENTRY_SUFFIX);
+        long length = entry.length();
+        if (entry.delete() && size.get() >= 0) {
+            size.addAndGet(-length);
+        }
+    }
+
+    /**
+     * Creates the cache directory and restricts its permissions to its owner. The permissions of a directory
+     * created by another user can't be changed, such a directory is not used.
+     *
+     * @return true if the cache directory can be used
+     */
+    private synchronized boolean isUsable() {
+        if (usable == null) {
+            usable = (cacheDir.isDirectory() || cacheDir.mkdirs() || cacheDir.isDirectory())
+                    && cacheDir.setReadable(false, false) && cacheDir.setReadable(true, true)
+                    && cacheDir.setWritable(false, false) && cacheDir.setWritable(true, true)
+                    && cacheDir.setExecutable(false, false) && cacheDir.setExecutable(true, true);
+        }
+        return usable;
+    }
+
+    private long getSize() {
+        long currentSize = size.get();
+        if (currentSize < 0) {
+            currentSize = 0;
+            for (File entry : listEntries()) {
+                currentSize += entry.length();
+            }
+            size.compareAndSet(-1, currentSize);
+        }
+        return size.get();
+    }
+
+    /**
+     * Removes the least recently used entries until the cache is at 90% of its size
+     */
+    private synchronized void evict() {
+        File[] entries = listEntries();
+        final long[] lastModified = new long[entries.length];
+        Integer[] order = new Integer[entries.length];
+        long currentSize = 0;
+        for (int i = 0; i < entries.length; i++) {
+            lastModified[i] = entries[i].lastModified();
+            order[i] = i;
+            currentSize += entries[i].length();
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return lastModified[o1] < lastModified[o2] ? -1 : (lastModified[o1] == lastModified[o2] ? 0 : 1);
+            }
+        });
+
+        long targetSize = maxSize / 10 * 9;
+        for (int i = 0; i < order.length && currentSize > targetSize; i++) {
+            File entry = entries[order[i]];
+            long length = entry.length();
+            if (entry.delete()) {
+                currentSize -= length;
+            }
+        }
+        size.set(currentSize);
+    }
+
+    private File[] listEntries() {
+        File[] entries = cacheDir.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.getName().endsWith(ENTRY_SUFFIX) && file.isFile();
+            }
+        });
+        return entries == null ? new File[0] : entries;
+    }
+}
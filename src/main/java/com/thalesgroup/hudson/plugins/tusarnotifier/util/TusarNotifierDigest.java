@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.util;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * SHA-256 helpers for the file contents and the file names
+ */
+public class TusarNotifierDigest {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final int MAX_MEMO_ENTRIES = Integer.getInteger(TusarNotifierDigest.class.getName() + ".maxMemoEntries", 100000);
+
+    /**
+     * A file modified less than this delay before its digest is computed may be modified again with the same
+     * modification time, its digest is not remembered
+     */
+    private static final long MODIFICATION_TIME_GRANULARITY = 2000;
+
+    /**
+     * The digests of the files already read by the node, with the attributes of the files when they were read
+     */
+    private static final Map<String, MemoEntry> memo = new LinkedHashMap<String, MemoEntry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MemoEntry> eldest) {
+            return size() > MAX_MEMO_ENTRIES;
+        }
+    };
+
+    private TusarNotifierDigest() {
+    }
+
+    /**
+     * Creates a new SHA-256 message digest
+     *
+     * @return the message digest
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException("SHA-256 is not available", nsae);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 of a file content
+     *
+     * @param file the file
+     * @return the hexadecimal digest
+     * @throws IOException the file can't be read
+     */
+    public static String digest(File file) throws IOException {
+        return digest(new FileInputStream(file));
+    }
+
+    /**
+     * Computes the SHA-256 of a file content, the file isn't read again when its attributes haven't changed
+     * since its last digest
+     *
+     * @param file       the file
+     * @param attributes the current attributes of the file
+     * @return the hexadecimal digest
+     * @throws IOException the file can't be read
+     */
+    public static String digest(File file, TusarNotifierFileAttributes attributes) throws IOException {
+        String path = file.getAbsolutePath();
+        synchronized (memo) {
+            MemoEntry memoEntry = memo.get(path);
+            if (memoEntry != null && memoEntry.length == attributes.getLength() && memoEntry.lastModified == attributes.getLastModified()) {
+                return memoEntry.digest;
+            }
+        }
+        long readTime = System.currentTimeMillis();
+        String digest = digest(file);
+        if (readTime - attributes.getLastModified() > MODIFICATION_TIME_GRANULARITY) {
+            synchronized (memo) {
+                memo.put(path, new MemoEntry(attributes.getLength(), attributes.getLastModified(), digest));
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * Computes the SHA-256 of a stream content, the stream is closed
+     *
+     * @param is the stream
+     * @return the hexadecimal digest
+     * @throws IOException the stream can't be read
+     */
+    public static String digest(InputStream is) throws IOException {
+        MessageDigest messageDigest = newDigest();
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = is.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, n);
+            }
+        } finally {
+            is.close();
+        }
+        return toHex(messageDigest.digest());
+    }
+
+    /**
+     * Computes the SHA-256 of a string encoded in UTF-8
+     *
+     * @param value the string
+     * @return the hexadecimal digest
+     */
+    public static String digest(String value) {
+        try {
+            return toHex(newDigest().digest(value.getBytes("UTF-8")));
+        } catch (UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+
+    /**
+     * Reads the remaining bytes of a stream, so that a digest stream sees the whole content
+     *
+     * @param is the stream
+     * @throws IOException the stream can't be read
+     */
+    public static void drain(InputStream is) throws IOException {
+        byte[] buffer = new byte[8 * 1024];
+        while (is.read(buffer) != -1) {
+            //Only the digest is updated
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    private static class MemoEntry {
+
+        private final long length;
+
+        private final long lastModified;
+
+        private final String digest;
+
+        private MemoEntry(long length, long lastModified, String digest) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+    }
+}
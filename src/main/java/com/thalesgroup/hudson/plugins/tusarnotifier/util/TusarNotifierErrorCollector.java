@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.util;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Collects the validation errors of a file with a bounded memory.
+ * <p/>
+ * The errors are grouped by type, the message without its numbers (as its line and column): the first message and
+ * the number of errors of the first types are kept, the errors of the other types are only counted. The number of
+ * types is given by the system property
+ * <code>com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierErrorCollector.maxTypes</code> (100 by default).
+ * When a sidecar file is given, every error is also written to this gzip compressed text file, one error per line.
+ * The sidecar files of a tool are written to the {@link #SIDECAR_DIRECTORY} subdirectory of its output directory,
+ * away from the TUSAR files.
+ */
+public class TusarNotifierErrorCollector {
+
+    private static final int MAX_TYPES = Integer.getInteger(TusarNotifierErrorCollector.class.getName() + ".maxTypes", 100);
+
+    public static final String SIDECAR_DIRECTORY = "validation-errors";
+
+    public static final String SIDECAR_FILE_PREFIX = "validation-errors-";
+
+    private final Map<String, String> firstErrors = new LinkedHashMap<String, String>();
+
+    private final Map<String, Integer> counts = new HashMap<String, Integer>();
+
+    private int count;
+
+    private int otherCount;
+
+    private File sidecarFile;
+
+    private Writer sidecarWriter;
+
+    public TusarNotifierErrorCollector() {
+    }
+
+    /**
+     * @param sidecarFile the file receiving all the errors, null to keep only the bounded summary
+     */
+    public TusarNotifierErrorCollector(File sidecarFile) {
+        this.sidecarFile = sidecarFile;
+    }
+
+    /**
+     * Creates the collector of the validation errors of a report
+     *
+     * @param outputDirectory the TUSAR output directory of the tool, null for no sidecar file
+     * @param inputFile       the report
+     * @param kind            the kind of errors, input or output
+     * @return the collector
+     */
+    public static TusarNotifierErrorCollector newInstance(File outputDirectory, File inputFile, String kind) {
+        if (outputDirectory == null) {
+            return new TusarNotifierErrorCollector();
+        }
+        return new TusarNotifierErrorCollector(new File(new File(outputDirectory, SIDECAR_DIRECTORY),
+                SIDECAR_FILE_PREFIX + TusarNotifierDigest.digest(inputFile.getAbsolutePath()).substring(0, 16) + "-" + kind + ".txt.gz"));
+    }
+
+    public synchronized void add(String error) {
+        count++;
+        String type = error.replaceAll("[0-9]+", "#");
+        Integer typeCount = counts.get(type);
+        if (typeCount != null) {
+            counts.put(type, typeCount + 1);
+        } else if (firstErrors.size() < MAX_TYPES) {
+            firstErrors.put(type, error);
+            counts.put(type, 1);
+        } else {
+            otherCount++;
+        }
+        spill(error);
+    }
+
+    public void addAll(Collection<?> errors) {
+        if (errors == null) {
+            return;
+        }
+        for (Object error : errors) {
+            add(String.valueOf(error));
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return the number of errors, all the types included
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of errors by type for the kept types, the types are identified by their first message
+     *         and are in the order of their first error
+     */
+    public synchronized Map<String, Integer> getTypeCounts() {
+        Map<String, Integer> typeCounts = new LinkedHashMap<String, Integer>();
+        for (Map.Entry<String, String> firstError : firstErrors.entrySet()) {
+            typeCounts.put(firstError.getValue(), counts.get(firstError.getKey()));
+        }
+        return typeCounts;
+    }
+
+    /**
+     * @return the number of errors whose type isn't kept
+     */
+    public synchronized int getOtherCount() {
+        return otherCount;
+    }
+
+    /**
+     * @return the file with all the errors, null if there is no such file
+     */
+    public synchronized File getSidecarFile() {
+        return count == 0 ? null : sidecarFile;
+    }
+
+    /**
+     * Closes the sidecar file, the file is deleted when there is no error
+     */
+    public synchronized void close() {
+        if (sidecarWriter != null) {
+            try {
+                sidecarWriter.close();
+            } catch (IOException ioe) {
+                sidecarFile = null;
+            }
+            sidecarWriter = null;
+        }
+        if (sidecarFile != null && count == 0 && sidecarFile.exists() && !sidecarFile.delete()) {
+            sidecarFile.deleteOnExit();
+        }
+    }
+
+    private void spill(String error) {
+        if (sidecarFile == null) {
+            return;
+        }
+        try {
+            if (sidecarWriter == null) {
+                File sidecarDirectory = sidecarFile.getParentFile();
+                if (sidecarDirectory != null && !sidecarDirectory.isDirectory() && !sidecarDirectory.mkdirs() && !sidecarDirectory.isDirectory()) {
+                    throw new IOException("Can't create the directory " + sidecarDirectory);
+                }
+                sidecarWriter = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(sidecarFile), 64 * 1024), "UTF-8"));
+            }
+            sidecarWriter.write(error);
+            sidecarWriter.write('\n');
+        } catch (IOException ioe) {
+            //The summary is kept, the sidecar file isn't reported
+            if (sidecarWriter != null) {
+                try {
+                    sidecarWriter.close();
+                } catch (IOException ignored) {
+                    //The file is deleted below
+                }
+                sidecarWriter = null;
+            }
+            if (sidecarFile.exists() && !sidecarFile.delete()) {
+                sidecarFile.deleteOnExit();
+            }
+            sidecarFile = null;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.util;
+
+import hudson.os.PosixAPI;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Materializes a file at another location with the cheapest available strategy:
+ * a hard link, a copy-on-write clone (reflink), a kernel-side copy and finally a streaming copy.
+ */
+public class TusarNotifierFileTransfer {
+
+    /**
+     * Files smaller than this size are not worth spawning a process for a reflink
+     */
+    private static final long REFLINK_MIN_SIZE = 8 * 1024 * 1024;
+
+    private static final boolean LINUX = System.getProperty("os.name", "").toLowerCase().startsWith("linux");
+
+    /**
+     * The target directories where cp has reported once that the filesystem doesn't support the reflink
+     */
+    private static final Map<String, Boolean> reflinkUnsupportedDirs = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * False when cp can't be started
+     */
+    private static volatile boolean reflinkAvailable = true;
+
+    public enum Strategy {
+
+        HARD_LINK("hard link"),
+        REFLINK("reflink"),
+        TRANSFER_TO("kernel copy"),
+        STREAM_COPY("stream copy"),
+        DECOMPRESSION("decompression");
+
+        private final String description;
+
+        Strategy(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    private TusarNotifierFileTransfer() {
+    }
+
+    /**
+     * Makes the content of a source file available at a target location, an existing target file is replaced.
+     * When a hard link is used, the target shares the content of the source.
+     *
+     * @param source the source file
+     * @param target the target file
+     * @return the strategy that has been used
+     * @throws IOException the file can't be copied
+     */
+    public static Strategy transfer(File source, File target) throws IOException {
+        return transfer(source, target, true);
+    }
+
+    /**
+     * Makes the content of a source file available at a target location like {@link #transfer(File, File)},
+     * a gzip compressed source is decompressed to the target instead.
+     *
+     * @param source the source file, plain or gzip compressed
+     * @param target the target file
+     * @return the strategy that has been used
+     * @throws IOException the file can't be copied or decompressed
+     */
+    public static Strategy transferContent(File source, File target) throws IOException {
+        if (TusarNotifierCompression.detect(source) == TusarNotifierCompression.Format.NONE) {
+            return transfer(source, target);
+        }
+        if (target.exists() && !target.delete()) {
+            throw new IOException("Can't replace the file " + target);
+        }
+        TusarNotifierCompression.decompress(source, target);
+        return Strategy.DECOMPRESSION;
+    }
+
+    /**
+     * Copies a source file to a target location, the target never shares its content with the source
+     * so that a later modification of the source doesn't change the target.
+     *
+     * @param source the source file
+     * @param target the target file
+     * @return the strategy that has been used
+     * @throws IOException the file can't be copied
+     */
+    public static Strategy copy(File source, File target) throws IOException {
+        return transfer(source, target, false);
+    }
+
+    /**
+     * Gets a temporary file in the directory of a target file, where the target content is written before
+     * it replaces the target with {@link #replace(File, File)}
+     *
+     * @param target the target file
+     * @return a temporary file, not created
+     */
+    public static File getTempFile(File target) {
+        return new File(target.getAbsoluteFile().getParentFile(), target.getName() + "." + Thread.currentThread().getId() + "-" + System.nanoTime() + ".tmp");
+    }
+
+    /**
+     * Replaces a target file by a file of the same directory. The previous target file is unlinked and never
+     * rewritten: the files sharing its content (a hard link, a cache entry) keep their content.
+     * The source file is deleted when it can't replace the target.
+     *
+     * @param source the new content, usually a file of {@link #getTempFile(File)}
+     * @param target the target file
+     * @throws IOException the target file can't be replaced
+     */
+    public static void replace(File source, File target) throws IOException {
+        if (source.renameTo(target)) {
+            return;
+        }
+        //Some file systems don't rename over an existing file
+        if (target.exists() && !target.delete()) {
+            source.delete();
+            throw new IOException("Can't replace the file " + target);
+        }
+        if (!source.renameTo(target)) {
+            source.delete();
+            throw new IOException("Can't rename '" + source + "' to '" + target + "'.");
+        }
+    }
+
+    private static Strategy transfer(File source, File target, boolean allowHardLink) throws IOException {
+
+        if (target.exists() && !target.delete()) {
+            throw new IOException("Can't replace the file " + target);
+        }
+
+        if (allowHardLink && hardLink(source, target)) {
+            return Strategy.HARD_LINK;
+        }
+
+        if (reflink(source, target)) {
+            return Strategy.REFLINK;
+        }
+
+        try {
+            transferTo(source, target);
+            return Strategy.TRANSFER_TO;
+        } catch (IOException ioe) {
+            FileUtils.copyFile(source, target, false);
+            return Strategy.STREAM_COPY;
+        }
+    }
+
+    private static boolean hardLink(File source, File target) {
+        try {
+            return PosixAPI.get().link(source.getAbsolutePath(), target.getAbsolutePath()) == 0;
+        } catch (LinkageError le) {
+            return false;
+        } catch (RuntimeException re) {
+            return false;
+        }
+    }
+
+    private static boolean reflink(File source, File target) throws IOException {
+        String targetDir = target.getAbsoluteFile().getParent();
+        if (!LINUX || !reflinkAvailable || source.length() < REFLINK_MIN_SIZE || reflinkUnsupportedDirs.containsKey(targetDir)) {
+            return false;
+        }
+        Process process;
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder("cp", "--reflink=always", "--", source.getAbsolutePath(), target.getAbsolutePath())
+                    .redirectErrorStream(true);
+            //The errors of cp are recognized by their untranslated message
+            processBuilder.environment().put("LC_ALL", "C");
+            process = processBuilder.start();
+        } catch (IOException ioe) {
+            //cp is not available
+            reflinkAvailable = false;
+            return false;
+        }
+        try {
+            process.getOutputStream().close();
+            String output = IOUtils.toString(process.getInputStream());
+            if (process.waitFor() == 0) {
+                return true;
+            }
+            if (isReflinkUnsupported(output)) {
+                reflinkUnsupportedDirs.put(targetDir, Boolean.TRUE);
+            }
+        } catch (IOException ioe) {
+            //The output of cp can't be read
+            process.destroy();
+        } catch (InterruptedException ie) {
+            process.destroy();
+            target.delete();
+            Thread.currentThread().interrupt();
+            InterruptedIOException iioe = new InterruptedIOException("Interrupted while cloning the file " + source);
+            iioe.initCause(ie);
+            throw iioe;
+        }
+        target.delete();
+        return false;
+    }
+
+    /**
+     * Checks if a cp failure comes from the target filesystem, not from a transient error like a full disk
+     */
+    private static boolean isReflinkUnsupported(String cpOutput) {
+        return cpOutput.contains("Operation not supported")
+                || cpOutput.contains("Invalid cross-device link")
+                || cpOutput.contains("Inappropriate ioctl for device")
+                || cpOutput.contains("unrecognized option");
+    }
+
+    private static void transferTo(File source, File target) throws IOException {
+        FileInputStream fis = new FileInputStream(source);
+        try {
+            FileOutputStream fos = new FileOutputStream(target);
+            try {
+                FileChannel in = fis.getChannel();
+                FileChannel out = fos.getChannel();
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = in.transferTo(position, size - position, out);
+                    if (transferred <= 0) {
+                        throw new IOException("The file " + source + " has been truncated during its copy.");
+                    }
+                    position += transferred;
+                }
+            } finally {
+                fos.close();
+            }
+        } finally {
+            fis.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.util;
+
+import java.io.*;
+import java.util.Map;
+import java.util.SortedMap;
+
+
+/**
+ * Writes the manifest of an output directory, mapping each TUSAR file to the report it has been converted from.
+ * <p/>
+ * The manifest is a properties file whose keys are the TUSAR file names and whose values are the report paths
+ * relative to the workspace, one path per line for an aggregated TUSAR file. The entries are sorted and the file has no date, so that the same conversions
+ * give the same manifest on any node.
+ */
+public class TusarNotifierManifest {
+
+    public static final String MANIFEST_FILE_NAME = "tusar-manifest.properties";
+
+    private TusarNotifierManifest() {
+    }
+
+    /**
+     * Writes the manifest of an output directory, replacing the previous one
+     *
+     * @param outputDirectory the output directory
+     * @param entries         the report paths of each TUSAR file name
+     * @throws IOException the manifest can't be written
+     */
+    public static void write(File outputDirectory, SortedMap<String, String> entries) throws IOException {
+        File manifest = new File(outputDirectory, MANIFEST_FILE_NAME);
+        File tmpManifest = new File(outputDirectory, MANIFEST_FILE_NAME + ".tmp");
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpManifest), "ISO-8859-1"));
+        try {
+            writer.write("# TUSAR file = reports relative to the workspace\n");
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                writer.write(escape(entry.getKey(), true));
+                writer.write('=');
+                writer.write(escape(entry.getValue(), false));
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+        if (manifest.exists() && !manifest.delete()) {
+            throw new IOException("Can't replace the manifest '" + manifest + "'.");
+        }
+        if (!tmpManifest.renameTo(manifest)) {
+            throw new IOException("Can't rename '" + tmpManifest + "' to '" + manifest + "'.");
+        }
+    }
+
+    /**
+     * Escapes a key or a value as java.util.Properties does
+     */
+    private static String escape(String value, boolean key) {
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                case ' ':
+                    sb.append(i == 0 || key ? "\\ " : " ");
+                    break;
+                case '=':
+                case ':':
+                case '#':
+                case '!':
+                    sb.append('\\').append(c);
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        sb.append(String.format("\\u%04X", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+}
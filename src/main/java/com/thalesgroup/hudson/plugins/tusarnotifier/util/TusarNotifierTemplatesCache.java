@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.util;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.TransformerFactoryConfigurationError;
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+
+/**
+ * Keeps the compiled stylesheets of the node in memory, so that a stylesheet is compiled only
+ * once for all the files, tools and builds using it.
+ * <p/>
+ * A stylesheet is identified by its path, its last modification date and its size: a modified
+ * stylesheet is compiled again. The least recently used stylesheets are evicted when the total
+ * size of the cached stylesheet sources exceeds the limit given by the system property
+ * <code>com.thalesgroup.hudson.plugins.tusarnotifier.util.TusarNotifierTemplatesCache.maxSize</code>
+ * (in bytes, 8 MB by default; a compiled stylesheet usually takes a few times the size of its source).
+ */
+public class TusarNotifierTemplatesCache {
+
+    private static final long MAX_SIZE = Long.getLong(TusarNotifierTemplatesCache.class.getName() + ".maxSize", 8 * 1024 * 1024);
+
+    private static final String SAXON_TRANSFORMER_FACTORY = "net.sf.saxon.TransformerFactoryImpl";
+
+    private static final TusarNotifierTemplatesCache INSTANCE = new TusarNotifierTemplatesCache(MAX_SIZE);
+
+    private final long maxSize;
+
+    private long size;
+
+    private final LinkedHashMap<TemplatesKey, FutureTask<Templates>> templatesMap = new LinkedHashMap<TemplatesKey, FutureTask<Templates>>(16, 0.75f, true);
+
+    TusarNotifierTemplatesCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public static TusarNotifierTemplatesCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the compiled stylesheet of a file, compiles it if it is not in the cache
+     *
+     * @param xslFile the stylesheet file
+     * @return the compiled stylesheet, shared between threads
+     * @throws TransformerConfigurationException
+     *          the stylesheet can't be compiled
+     */
+    public Templates getTemplates(File xslFile) throws TransformerConfigurationException {
+        return getTemplates(new TemplatesKey(xslFile), xslFile.toURI().toASCIIString());
+    }
+
+    /**
+     * Gets the compiled stylesheet of a location, such as a stylesheet bundled in a converter jar
+     *
+     * @param xslURL the stylesheet location
+     * @return the compiled stylesheet, shared between threads
+     * @throws TransformerConfigurationException
+     *          the stylesheet can't be read or compiled
+     */
+    public Templates getTemplates(URL xslURL) throws TransformerConfigurationException {
+        if ("file".equals(xslURL.getProtocol())) {
+            try {
+                return getTemplates(new File(xslURL.toURI()));
+            } catch (URISyntaxException use) {
+                //Identified by its URL
+            }
+        }
+        try {
+            return getTemplates(new TemplatesKey(xslURL), xslURL.toExternalForm());
+        } catch (IOException ioe) {
+            throw new TransformerConfigurationException("Can't read the stylesheet '" + xslURL + "'.", ioe);
+        }
+    }
+
+    private Templates getTemplates(final TemplatesKey key, final String xslSystemId) throws TransformerConfigurationException {
+
+        FutureTask<Templates> task;
+        boolean owner = false;
+        synchronized (this) {
+            task = templatesMap.get(key);
+            if (task == null) {
+                task = new FutureTask<Templates>(new java.util.concurrent.Callable<Templates>() {
+                    public Templates call() throws Exception {
+                        return newTransformerFactory().newTemplates(new StreamSource(xslSystemId));
+                    }
+                });
+                templatesMap.put(key, task);
+                size += key.getLength();
+                evict();
+                owner = true;
+            }
+        }
+
+        //The stylesheet is compiled outside the lock, the other threads wait for the same task
+        if (owner) {
+            task.run();
+        }
+
+        try {
+            return task.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new TransformerConfigurationException("The compilation of the stylesheet '" + xslSystemId + "' has been interrupted.", ie);
+        } catch (ExecutionException ee) {
+            remove(key, task);
+            Throwable cause = ee.getCause();
+            if (cause instanceof TransformerConfigurationException) {
+                throw (TransformerConfigurationException) cause;
+            }
+            throw new TransformerConfigurationException("Can't compile the stylesheet '" + xslSystemId + "'.", cause);
+        }
+    }
+
+    /**
+     * Checks if a stylesheet file has already been compiled
+     *
+     * @param xslFile the stylesheet file
+     * @return true if the compiled stylesheet of the current version of the file is in the cache
+     */
+    public synchronized boolean isCompiled(File xslFile) {
+        FutureTask<Templates> task = templatesMap.get(new TemplatesKey(xslFile));
+        return task != null && task.isDone();
+    }
+
+    /**
+     * Removes all the compiled stylesheets
+     */
+    public synchronized void clear() {
+        templatesMap.clear();
+        size = 0;
+    }
+
+    private synchronized void remove(TemplatesKey key, FutureTask<Templates> task) {
+        if (templatesMap.get(key) == task) {
+            templatesMap.remove(key);
+            size -= key.getLength();
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<TemplatesKey, FutureTask<Templates>>> it = templatesMap.entrySet().iterator();
+        //The most recent entry is always kept
+        while (size > maxSize && templatesMap.size() > 1 && it.hasNext()) {
+            Map.Entry<TemplatesKey, FutureTask<Templates>> eldest = it.next();
+            it.remove();
+            size -= eldest.getKey().getLength();
+        }
+    }
+
+    /**
+     * Creates a transformer factory, Saxon when it is available as for the dtkit conversions
+     *
+     * @return a new transformer factory
+     */
+    public static TransformerFactory newTransformerFactory() {
+        try {
+            return TransformerFactory.newInstance(SAXON_TRANSFORMER_FACTORY, TusarNotifierTemplatesCache.class.getClassLoader());
+        } catch (TransformerFactoryConfigurationError e) {
+            return TransformerFactory.newInstance();
+        }
+    }
+
+    private static class TemplatesKey {
+
+        private final String path;
+
+        private final long lastModified;
+
+        private final long length;
+
+        private TemplatesKey(File xslFile) {
+            this.path = getCanonicalPath(xslFile);
+            this.lastModified = xslFile.lastModified();
+            this.length = xslFile.length();
+        }
+
+        private TemplatesKey(URL xslURL) throws IOException {
+            URLConnection connection = xslURL.openConnection();
+            this.path = xslURL.toExternalForm();
+            this.lastModified = connection.getLastModified();
+            this.length = Math.max(0, connection.getContentLength());
+        }
+
+        private static String getCanonicalPath(File file) {
+            try {
+                return file.getCanonicalPath();
+            } catch (IOException ioe) {
+                return file.getAbsolutePath();
+            }
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TemplatesKey)) {
+                return false;
+            }
+            TemplatesKey that = (TemplatesKey) o;
+            return lastModified == that.lastModified && length == that.length && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            result = 31 * result + (int) (length ^ (length >>> 32));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.util;
+
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+
+/**
+ * Finds the files matching several Ant patterns with a single walk of a directory tree.
+ * <p/>
+ * Each pattern follows the syntax of the includes of an Ant fileset (comma separated patterns)
+ * and the Ant default excludes are applied. A directory is only visited when at least one
+ * pattern could match some of its descendants.
+ */
+public class TusarNotifierWorkspaceScanner {
+
+    private final List<String[]> includesList = new ArrayList<String[]>();
+
+    private final String[] excludes;
+
+    /**
+     * Creates a scanner
+     *
+     * @param patterns the patterns to search, one per tool
+     */
+    public TusarNotifierWorkspaceScanner(List<String> patterns) {
+        for (String pattern : patterns) {
+            List<String> includes = new ArrayList<String>();
+            if (pattern != null) {
+                for (String include : pattern.split(",")) {
+                    include = include.trim();
+                    if (include.length() != 0) {
+                        includes.add(normalizePattern(include));
+                    }
+                }
+            }
+            includesList.add(includes.toArray(new String[includes.size()]));
+        }
+
+        String[] defaultExcludes = DirectoryScanner.getDefaultExcludes();
+        excludes = new String[defaultExcludes.length];
+        for (int i = 0; i < defaultExcludes.length; i++) {
+            excludes[i] = normalizePattern(defaultExcludes[i]);
+        }
+    }
+
+    private static String normalizePattern(String pattern) {
+        String normalized = pattern.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        if (normalized.endsWith(File.separator)) {
+            normalized += "**";
+        }
+        return normalized;
+    }
+
+    /**
+     * Walks the directory tree and dispatches each file to the matching patterns
+     *
+     * @param baseDir the root of the directory tree
+     * @return for each pattern (in the order of the constructor list), the sorted paths of
+     *         the matching files relative to the base directory
+     */
+    public List<List<String>> scan(File baseDir) {
+
+        List<List<String>> result = new ArrayList<List<String>>();
+        List<Integer> candidates = new ArrayList<Integer>();
+        for (int i = 0; i < includesList.size(); i++) {
+            result.add(new ArrayList<String>());
+            if (includesList.get(i).length != 0) {
+                candidates.add(i);
+            }
+        }
+
+        if (!candidates.isEmpty()) {
+            scanDirectory(baseDir, "", candidates, new HashSet<String>(), result);
+        }
+
+        for (List<String> files : result) {
+            Collections.sort(files);
+        }
+        return result;
+    }
+
+    private void scanDirectory(File dir, String relativeDir, List<Integer> candidates, Set<String> ancestors, List<List<String>> result) {
+
+        String canonicalDir = getCanonicalPath(dir);
+        if (!ancestors.add(canonicalDir)) {
+            //Symbolic link loop
+            return;
+        }
+
+        try {
+            String[] names = dir.list();
+            if (names == null) {
+                return;
+            }
+            Arrays.sort(names);
+
+            for (String name : names) {
+                String relativePath = relativeDir + name;
+                if (isExcluded(relativePath)) {
+                    continue;
+                }
+
+                File file = new File(dir, name);
+                if (file.isDirectory()) {
+                    List<Integer> subCandidates = getCandidates(relativePath, candidates);
+                    if (!subCandidates.isEmpty()) {
+                        scanDirectory(file, relativePath + File.separator, subCandidates, ancestors, result);
+                    }
+                } else {
+                    for (int candidate : candidates) {
+                        if (isIncluded(candidate, relativePath)) {
+                            result.get(candidate).add(relativePath);
+                        }
+                    }
+                }
+            }
+        } finally {
+            ancestors.remove(canonicalDir);
+        }
+    }
+
+    /**
+     * Gets the patterns that could match a descendant of a directory
+     */
+    private List<Integer> getCandidates(String relativeDir, List<Integer> candidates) {
+        List<Integer> subCandidates = new ArrayList<Integer>(candidates.size());
+        for (int candidate : candidates) {
+            for (String include : includesList.get(candidate)) {
+                if (SelectorUtils.matchPatternStart(include, relativeDir)) {
+                    subCandidates.add(candidate);
+                    break;
+                }
+            }
+        }
+        return subCandidates;
+    }
+
+    private boolean isIncluded(int candidate, String relativePath) {
+        for (String include : includesList.get(candidate)) {
+            if (SelectorUtils.matchPath(include, relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isExcluded(String relativePath) {
+        for (String exclude : excludes) {
+            if (SelectorUtils.matchPath(exclude, relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getCanonicalPath(File dir) {
+        try {
+            return dir.getCanonicalPath();
+        } catch (IOException ioe) {
+            return dir.getAbsolutePath();
+        }
+    }
+}
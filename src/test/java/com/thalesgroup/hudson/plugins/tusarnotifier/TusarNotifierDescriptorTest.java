@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier;
+
+import hudson.util.FormValidation;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The form checks of the descriptor need no Jenkins instance
+ */
+public class TusarNotifierDescriptorTest {
+
+    private static FormValidation.Kind checkFailureBudget(String value) {
+        return TusarNotifier.TusarNotifierDescriptor.checkFailureBudget(value).kind;
+    }
+
+    @Test
+    public void checkFailureBudgetWithoutBudget() {
+        assertEquals(FormValidation.Kind.OK, checkFailureBudget(null));
+        assertEquals(FormValidation.Kind.OK, checkFailureBudget(""));
+        assertEquals(FormValidation.Kind.OK, checkFailureBudget("  "));
+    }
+
+    @Test
+    public void checkFailureBudget() {
+        assertEquals(FormValidation.Kind.OK, checkFailureBudget("0"));
+        assertEquals(FormValidation.Kind.OK, checkFailureBudget("5"));
+        assertEquals(FormValidation.Kind.OK, checkFailureBudget("10%"));
+        assertEquals(FormValidation.Kind.OK, checkFailureBudget("100%"));
+    }
+
+    @Test
+    public void checkMalformedFailureBudget() {
+        assertEquals(FormValidation.Kind.ERROR, checkFailureBudget("five"));
+        assertEquals(FormValidation.Kind.ERROR, checkFailureBudget("-1"));
+        assertEquals(FormValidation.Kind.ERROR, checkFailureBudget("101%"));
+        assertEquals(FormValidation.Kind.ERROR, checkFailureBudget("1.5"));
+    }
+}
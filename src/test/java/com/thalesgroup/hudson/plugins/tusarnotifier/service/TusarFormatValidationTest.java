@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.service;
+
+import com.thalesgroup.dtkit.metrics.hudson.model.JUnitTusarHudsonTestType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TusarFormatValidationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A TUSAR file written by the default JUnit converter
+     */
+    private File tusarFile;
+
+    @Before
+    public void convertJUnitReport() throws Exception {
+        File junitFile = folder.newFile("junit-report.xml");
+        copy(getClass().getResourceAsStream("junit-report.xml"), new FileOutputStream(junitFile));
+        tusarFile = new File(folder.getRoot(), "TUSAR-junit.xml");
+        new JUnitTusarHudsonTestType("", false, false, false).getInputMetric().convert(junitFile, tusarFile);
+    }
+
+    private static void copy(InputStream is, OutputStream os) throws IOException {
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+        } finally {
+            is.close();
+            os.close();
+        }
+    }
+
+    @Test
+    public void aTusarFileIsValidEachTimeItIsValidated() {
+        TusarFormatValidation validation = new TusarFormatValidation();
+        assertTrue(validation.isTusarFormat(tusarFile));
+        assertTrue(validation.isTusarFormat(tusarFile));
+    }
+
+    @Test
+    public void theCopyOfAValidatedFileIsVerifiedFromItsDigest() throws IOException {
+        assertTrue(new TusarFormatValidation().isTusarFormat(tusarFile));
+
+        File copy = folder.newFile("TUSAR-copy.xml");
+        copy(new FileInputStream(tusarFile), new FileOutputStream(copy));
+        assertTrue(new TusarFormatValidation().isVerifiedTusarFormat(copy));
+        assertTrue(new TusarFormatValidation().isVerifiedTusarFormat(copy));
+    }
+
+    @Test
+    public void aCompressedTusarFileIsValid() throws IOException {
+        File compressed = folder.newFile("TUSAR-junit.xml.gz");
+        copy(new FileInputStream(tusarFile), new GZIPOutputStream(new FileOutputStream(compressed)));
+        assertTrue(new TusarFormatValidation().isTusarFormat(compressed));
+    }
+
+    @Test
+    public void aTruncatedTusarFileIsInvalid() throws IOException {
+        File truncated = folder.newFile("TUSAR-truncated.xml");
+        InputStream is = new FileInputStream(tusarFile);
+        try {
+            byte[] content = new byte[(int) tusarFile.length() / 2];
+            new DataInputStream(is).readFully(content);
+            copy(new ByteArrayInputStream(content), new FileOutputStream(truncated));
+        } finally {
+            is.close();
+        }
+        assertFalse(new TusarFormatValidation().isTusarFormat(truncated));
+        assertFalse(new TusarFormatValidation().isVerifiedTusarFormat(truncated));
+    }
+
+    @Test
+    public void aReportOfAnotherFormatIsInvalid() throws IOException {
+        File junitFile = folder.newFile("junit.xml");
+        copy(getClass().getResourceAsStream("junit-report.xml"), new FileOutputStream(junitFile));
+        assertFalse(new TusarFormatValidation().isTusarFormat(junitFile));
+    }
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.service;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.thalesgroup.dtkit.metrics.hudson.model.JUnitTusarHudsonTestType;
+import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class TusarNotifierAggregationServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TusarNotifierAggregationService aggregationService;
+
+    private File outputDirectory;
+
+    /**
+     * A TUSAR file written by the default JUnit converter
+     */
+    private File tusarFile;
+
+    @Before
+    public void createService() throws Exception {
+        aggregationService = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(BuildListener.class).toInstance(new StreamBuildListener(System.out));
+            }
+        }).getInstance(TusarNotifierAggregationService.class);
+
+        File junitFile = folder.newFile("junit-report.xml");
+        copy(getClass().getResourceAsStream("junit-report.xml"), new FileOutputStream(junitFile));
+        tusarFile = new File(folder.getRoot(), "TUSAR-junit.xml");
+        new JUnitTusarHudsonTestType("", false, false, false).getInputMetric().convert(junitFile, tusarFile);
+
+        outputDirectory = folder.newFolder("output");
+    }
+
+    private static void copy(InputStream is, OutputStream os) throws IOException {
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+        } finally {
+            is.close();
+            os.close();
+        }
+    }
+
+    /**
+     * Copies a file into the output directory as the TUSAR files of reports
+     */
+    private SortedMap<String, String> addOutputs(File file, String... reports) throws IOException {
+        SortedMap<String, String> outputs = new TreeMap<String, String>();
+        for (String report : reports) {
+            String fileName = "TUSAR-" + report + ".xml";
+            copy(new FileInputStream(file), new FileOutputStream(new File(outputDirectory, fileName)));
+            outputs.put(fileName, report);
+        }
+        return outputs;
+    }
+
+    private static boolean isShard(String fileName) {
+        return fileName.startsWith(TusarNotifierAggregationService.SHARD_FILE_PREFIX);
+    }
+
+    @Test
+    public void theFilesOfACategoryAreMergedIntoOneShard() throws IOException {
+        SortedMap<String, String> outputs = addOutputs(tusarFile, "a", "b", "c");
+
+        SortedMap<String, String> aggregatedOutputs = aggregationService.aggregate(outputDirectory, outputs, 1);
+
+        assertEquals(1, aggregatedOutputs.size());
+        String shardName = aggregatedOutputs.firstKey();
+        assertTrue(isShard(shardName));
+        assertEquals("a\nb\nc", aggregatedOutputs.get(shardName));
+        assertTrue(new TusarFormatValidation().isTusarFormat(new File(outputDirectory, shardName)));
+        for (String fileName : outputs.keySet()) {
+            assertFalse(new File(outputDirectory, fileName).exists());
+        }
+    }
+
+    @Test
+    public void theFilesOfACategoryArePartitionedInFileNameOrder() throws IOException {
+        SortedMap<String, String> outputs = addOutputs(tusarFile, "a", "b", "c", "d");
+
+        SortedMap<String, String> aggregatedOutputs = aggregationService.aggregate(outputDirectory, outputs, 2);
+
+        assertEquals(2, aggregatedOutputs.size());
+        assertEquals("a\nb", aggregatedOutputs.get(aggregatedOutputs.firstKey()));
+        assertEquals("c\nd", aggregatedOutputs.get(aggregatedOutputs.lastKey()));
+        for (String shardName : aggregatedOutputs.keySet()) {
+            assertTrue(isShard(shardName));
+            assertTrue(new TusarFormatValidation().isTusarFormat(new File(outputDirectory, shardName)));
+        }
+    }
+
+    @Test
+    public void aPartitionWithASingleFileIsKept() throws IOException {
+        SortedMap<String, String> outputs = addOutputs(tusarFile, "a", "b", "c");
+
+        SortedMap<String, String> aggregatedOutputs = aggregationService.aggregate(outputDirectory, outputs, 2);
+
+        assertEquals(2, aggregatedOutputs.size());
+        assertEquals("c", aggregatedOutputs.get("TUSAR-c.xml"));
+        assertTrue(new File(outputDirectory, "TUSAR-c.xml").exists());
+        assertEquals("a\nb", aggregatedOutputs.get(aggregatedOutputs.firstKey()));
+    }
+
+    @Test
+    public void theFilesOfAnInvalidShardAreKept() throws IOException {
+        File junitFile = new File(folder.getRoot(), "junit-report.xml");
+        SortedMap<String, String> outputs = addOutputs(junitFile, "a", "b");
+
+        SortedMap<String, String> aggregatedOutputs = aggregationService.aggregate(outputDirectory, outputs, 1);
+
+        assertEquals(outputs, aggregatedOutputs);
+        for (String fileName : outputs.keySet()) {
+            assertTrue(new File(outputDirectory, fileName).exists());
+        }
+        assertEquals(outputs.size(), outputDirectory.list().length);
+    }
+
+    @Test
+    public void anUnreadableFileIsKept() throws IOException {
+        SortedMap<String, String> outputs = addOutputs(tusarFile, "a", "b");
+        File notXML = new File(outputDirectory, "TUSAR-c.xml");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(notXML), "UTF-8");
+        try {
+            writer.write("not an XML file");
+        } finally {
+            writer.close();
+        }
+        outputs.put(notXML.getName(), "c");
+
+        SortedMap<String, String> aggregatedOutputs = aggregationService.aggregate(outputDirectory, outputs, 1);
+
+        assertEquals(2, aggregatedOutputs.size());
+        assertEquals("c", aggregatedOutputs.get(notXML.getName()));
+        assertTrue(notXML.exists());
+        for (Map.Entry<String, String> output : aggregatedOutputs.entrySet()) {
+            if (isShard(output.getKey())) {
+                assertEquals("a\nb", output.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void theShardsOfAPreviousAggregationAreDeleted() throws IOException {
+        File previousShard = new File(outputDirectory, TusarNotifierAggregationService.SHARD_FILE_PREFIX + "tests-00000000-1.xml");
+        copy(new FileInputStream(tusarFile), new FileOutputStream(previousShard));
+        SortedMap<String, String> outputs = addOutputs(tusarFile, "a", "b");
+
+        SortedMap<String, String> aggregatedOutputs = aggregationService.aggregate(outputDirectory, outputs, 1);
+
+        assertFalse(previousShard.exists());
+        assertEquals(1, aggregatedOutputs.size());
+        assertEquals(1, outputDirectory.list().length);
+    }
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.service;
+
+import com.thalesgroup.dtkit.metrics.hudson.model.JUnitTusarHudsonTestType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+public class TusarStreamingConverterTest {
+
+    private static final String[][] JUNIT_RECORD_PATHS = {{"testsuites", "testsuite"}, {"testsuite", "testcase"}};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A converter of the JUnit reports with a test stylesheet, converting each report whole
+     */
+    private TusarStreamingConverter wholeConverter;
+
+    private File junitFile;
+
+    @Before
+    public void createConverter() throws Exception {
+        wholeConverter = new TusarStreamingConverter(getClass().getResource("fragments.xsl"), JUNIT_RECORD_PATHS, Long.MAX_VALUE);
+        junitFile = folder.newFile("junit-report.xml");
+        copy(getClass().getResourceAsStream("junit-report.xml"), new FileOutputStream(junitFile));
+    }
+
+    private static void copy(InputStream is, OutputStream os) throws IOException {
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+        } finally {
+            is.close();
+            os.close();
+        }
+    }
+
+    private File newReport(String content) throws IOException {
+        File report = folder.newFile("report.xml");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(report), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return report;
+    }
+
+    private static String read(File file) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        copy(new FileInputStream(file), content);
+        return content.toString("UTF-8");
+    }
+
+    private static int count(String content, String element) {
+        int count = 0;
+        for (int i = content.indexOf("<" + element + " "); i != -1; i = content.indexOf("<" + element + " ", i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void aReportIsConvertedByFragmentsAsItIsConvertedWhole() throws IOException {
+        File wholeOutput = new File(folder.getRoot(), "TUSAR-whole.xml");
+        File fragmentsOutput = new File(folder.getRoot(), "TUSAR-fragments.xml");
+
+        assertTrue(wholeConverter.convert(junitFile, wholeOutput));
+        assertTrue(wholeConverter.withFragmentSize(1).convert(junitFile, fragmentsOutput));
+
+        assertEquals(read(wholeOutput), read(fragmentsOutput));
+        assertEquals(3, count(read(fragmentsOutput), "test"));
+    }
+
+    @Test
+    public void theEnclosingElementsAreInEachFragmentAndTheContentAfterTheRecordsInTheLastOne() throws IOException {
+        File report = newReport("<testsuite name=\"suite\"><properties/><testcase name=\"a\"/><testcase name=\"b\"/>"
+                + "<system-out>out</system-out></testsuite>");
+        File output = new File(folder.getRoot(), "TUSAR-output.xml");
+
+        assertTrue(wholeConverter.withFragmentSize(1).convert(report, output));
+
+        String content = read(output);
+        assertEquals(2, count(content, "test"));
+        assertEquals(2, count(content, "test suite=\"suite\""));
+        assertTrue(content.indexOf("<output>out</output>") != -1);
+        assertEquals(content.indexOf("<output>"), content.lastIndexOf("<output>"));
+    }
+
+    @Test
+    public void aReportWithAnotherRootElementIsNotConvertedByFragments() throws IOException {
+        File report = newReport("<results><testcase name=\"a\"/></results>");
+        File output = new File(folder.getRoot(), "TUSAR-output.xml");
+
+        assertFalse(wholeConverter.convert(report, output));
+        assertFalse(output.exists());
+    }
+
+    @Test
+    public void aReportWithTextAroundTheRecordsIsNotConvertedByFragments() throws IOException {
+        File report = newReport("<testsuite name=\"suite\">text<testcase name=\"a\"/></testsuite>");
+        File output = new File(folder.getRoot(), "TUSAR-output.xml");
+
+        assertFalse(wholeConverter.convert(report, output));
+        //Only the reports are left
+        assertEquals(2, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void aJUnitReportIsConvertedByFragmentsIntoATusarFile() throws IOException {
+        TusarStreamingConverter converter = TusarStreamingConverter.getConverter(new JUnitTusarHudsonTestType("", false, false, false));
+        assertNotNull(converter);
+        File output = new File(folder.getRoot(), "TUSAR-junit.xml");
+
+        assertTrue(converter.withFragmentSize(1).convert(junitFile, output));
+
+        assertTrue(new TusarFormatValidation().isTusarFormat(output));
+    }
+}
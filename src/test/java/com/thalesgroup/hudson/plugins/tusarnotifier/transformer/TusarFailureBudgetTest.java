@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.transformer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TusarFailureBudgetTest {
+
+    @Test
+    public void emptyBudget() {
+        assertNull(TusarFailureBudget.parse(null));
+        assertNull(TusarFailureBudget.parse(""));
+        assertNull(TusarFailureBudget.parse("   "));
+    }
+
+    @Test
+    public void absoluteCount() {
+        TusarFailureBudget budget = TusarFailureBudget.parse("5");
+        assertNotNull(budget);
+        assertEquals("5", budget.toString());
+        assertEquals(5, budget.getAllowedFailures(0));
+        assertEquals(5, budget.getAllowedFailures(1000));
+        assertFalse(budget.isExceeded(5, 10));
+        assertTrue(budget.isExceeded(6, 10));
+    }
+
+    @Test
+    public void zeroCount() {
+        TusarFailureBudget budget = TusarFailureBudget.parse("0");
+        assertNotNull(budget);
+        assertFalse(budget.isExceeded(0, 10));
+        assertTrue(budget.isExceeded(1, 10));
+    }
+
+    @Test
+    public void percentage() {
+        TusarFailureBudget budget = TusarFailureBudget.parse("10%");
+        assertNotNull(budget);
+        assertEquals("10%", budget.toString());
+        assertEquals(0, budget.getAllowedFailures(9));
+        assertEquals(1, budget.getAllowedFailures(10));
+        assertEquals(10, budget.getAllowedFailures(109));
+        assertFalse(budget.isExceeded(1, 10));
+        assertTrue(budget.isExceeded(2, 10));
+    }
+
+    @Test
+    public void percentageOfManyReports() {
+        TusarFailureBudget budget = TusarFailureBudget.parse("100%");
+        assertNotNull(budget);
+        assertEquals(Integer.MAX_VALUE, budget.getAllowedFailures(Integer.MAX_VALUE));
+        assertFalse(budget.isExceeded(Integer.MAX_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void blanksAreIgnored() {
+        assertEquals("5", String.valueOf(TusarFailureBudget.parse(" 5 ")));
+        assertEquals("10%", String.valueOf(TusarFailureBudget.parse(" 10 % ")));
+    }
+
+    @Test
+    public void malformedBudget() {
+        assertNull(TusarFailureBudget.parse("five"));
+        assertNull(TusarFailureBudget.parse("%"));
+        assertNull(TusarFailureBudget.parse("5%%"));
+        assertNull(TusarFailureBudget.parse("1.5"));
+        assertNull(TusarFailureBudget.parse("-1"));
+        assertNull(TusarFailureBudget.parse("-1%"));
+        assertNull(TusarFailureBudget.parse("101%"));
+        assertNull(TusarFailureBudget.parse("99999999999"));
+    }
+}
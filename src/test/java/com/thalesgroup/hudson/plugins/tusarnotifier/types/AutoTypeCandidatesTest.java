@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.types;
+
+import com.thalesgroup.dtkit.metrics.hudson.api.type.MetricsType;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.test.AutoTestType;
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.test.TusarTestType;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AutoTypeCandidatesTest {
+
+    private final AutoTestType autoType = new AutoTestType("**/reports/*.xml", true, false);
+
+    @Test
+    public void aCandidateHasThePatternAndTheOptionsOfTheAutoDetectedType() {
+        MetricsType candidate = AutoTypeCandidates.newCandidate(new TusarTestType.TusarTestTypeDescriptor(), autoType);
+
+        assertTrue(candidate instanceof TusarTestType);
+        assertEquals("**/reports/*.xml", candidate.getPattern());
+        assertTrue(candidate.isFaildedIfNotNew());
+        assertFalse(candidate.isDeleteOutputFiles());
+    }
+
+    @Test
+    public void theAutoDetectedTypesAreNotCandidates() {
+        assertNull(AutoTypeCandidates.newCandidate(new AutoTestType.AutoTestTypeDescriptor(), autoType));
+    }
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.types;
+
+import org.junit.Test;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class TusarStreamWriterTest {
+
+    private static final String NS = "http://www.thalesgroup.com/tusar/v5";
+
+    private ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private TusarStreamWriter writer = new TusarStreamWriter(out);
+
+    private String getOutput() throws IOException {
+        writer.close();
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+    /**
+     * Reads back the text of the root element
+     */
+    private static String parseText(String document) throws XMLStreamException, IOException {
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new ByteArrayInputStream(document.getBytes("UTF-8")));
+        StringBuilder text = new StringBuilder();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                text.append(reader.getText());
+            }
+        }
+        reader.close();
+        return text.toString();
+    }
+
+    @Test
+    public void textAndAttributesAreEscaped() throws Exception {
+        writer.writeStartElement("", "root", "");
+        writer.writeAttribute("", "name", "", "a\"b<c>&d\te\nf\rg");
+        writer.writeCharacters("<a> & \"b\"\r\n");
+        writer.writeEndDocument();
+
+        assertEquals("<root name=\"a&quot;b&lt;c&gt;&amp;d&#9;e&#10;f&#13;g\">&lt;a&gt; &amp; \"b\"&#13;\n</root>\n", getOutput());
+    }
+
+    @Test
+    public void anEmptyElementIsClosedAtOnce() throws Exception {
+        writer.writeStartElement("", "root", "");
+        writer.writeStartElement("", "empty", "");
+        writer.writeEndElement();
+        writer.writeEndDocument();
+
+        assertEquals("<root><empty/></root>\n", getOutput());
+    }
+
+    @Test
+    public void aBoundNamespaceIsntDeclaredAgain() throws Exception {
+        writer.writeStartElement("tusar", "tusar", NS);
+        writer.writeNamespace("tusar", NS);
+        writer.writeStartElement("tusar", "tests", NS);
+        writer.writeEndElement();
+        writer.writeEndDocument();
+
+        assertEquals("<tusar:tusar xmlns:tusar=\"" + NS + "\"><tusar:tests/></tusar:tusar>\n", getOutput());
+    }
+
+    @Test
+    public void aNamespaceIsDeclaredAgainOutOfItsScope() throws Exception {
+        writer.writeStartElement("", "root", "");
+        writer.writeStartElement("t", "first", NS);
+        writer.writeEndElement();
+        writer.writeStartElement("t", "second", NS);
+        writer.writeEndElement();
+        writer.writeEndDocument();
+
+        assertEquals("<root><t:first xmlns:t=\"" + NS + "\"/><t:second xmlns:t=\"" + NS + "\"/></root>\n", getOutput());
+    }
+
+    @Test
+    public void aRedefinedPrefixIsDeclared() throws Exception {
+        writer.writeStartElement("t", "root", NS);
+        writer.writeStartElement("t", "child", "urn:other");
+        writer.writeEndElement();
+        writer.writeStartElement("t", "child", NS);
+        writer.writeEndElement();
+        writer.writeEndDocument();
+
+        assertEquals("<t:root xmlns:t=\"" + NS + "\"><t:child xmlns:t=\"urn:other\"/><t:child/></t:root>\n", getOutput());
+    }
+
+    @Test
+    public void theNamespaceOfAnAttributeIsDeclared() throws Exception {
+        writer.writeStartElement("", "root", "");
+        writer.writeAttribute("a", "name", "urn:attributes", "value");
+        writer.writeAttribute("xml", "lang", "http://www.w3.org/XML/1998/namespace", "en");
+        writer.writeEndDocument();
+
+        assertEquals("<root xmlns:a=\"urn:attributes\" a:name=\"value\" xml:lang=\"en\"/>\n", getOutput());
+    }
+
+    @Test
+    public void theCharactersAreEncodedInUTF8() throws Exception {
+        String text = "\u00e9\u20ac\ud834\udd1e";
+        writer.writeStartElement("", "root", "");
+        writer.writeCharacters(text);
+        writer.writeEndDocument();
+
+        String output = getOutput();
+        byte[] expected = ("<root>" + text + "</root>\n").getBytes("UTF-8");
+        assertEquals(new String(expected, "ISO-8859-1"), new String(out.toByteArray(), "ISO-8859-1"));
+        assertEquals(text, parseText(output));
+    }
+
+    @Test
+    public void theUnpairedSurrogatesAreReplaced() throws Exception {
+        writer.writeStartElement("", "root", "");
+        writer.writeCharacters("a\ud834b\udd1ec\udd1e\ud834");
+        writer.writeEndDocument();
+
+        assertEquals("a\ufffdb\ufffdc\ufffd\ufffd", parseText(getOutput()));
+    }
+
+    @Test
+    public void theCharactersNotAllowedInXMLAreReplaced() throws Exception {
+        writer.writeStartElement("", "root", "");
+        writer.writeAttribute("", "name", "", "a\u0000b");
+        writer.writeCharacters("c\u0001d\u001fe\ufffef\uffff\tg");
+        writer.writeEndDocument();
+
+        assertEquals("<root name=\"a\ufffdb\">c\ufffdd\ufffde\ufffdf\ufffd\tg</root>\n", getOutput());
+    }
+
+    @Test
+    public void aCDataSectionIsSplitOnItsEnd() throws Exception {
+        writer.writeStartElement("", "root", "");
+        writer.writeCData("a]]>b]]>");
+        writer.writeEndDocument();
+
+        String output = getOutput();
+        assertEquals("<root><![CDATA[a]]]]><![CDATA[>b]]]]><![CDATA[>]]></root>\n", output);
+        assertEquals("a]]>b]]>", parseText(output));
+    }
+
+    @Test
+    public void theHyphensOfACommentAreSeparated() throws Exception {
+        writer.writeStartElement("", "root", "");
+        writer.writeComment("a--b---c-d-");
+        writer.writeEndDocument();
+
+        String output = getOutput();
+        assertEquals("<root><!--a- -b- - -c-d- --></root>\n", output);
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new ByteArrayInputStream(output.getBytes("UTF-8")));
+        reader.nextTag();
+        assertEquals(XMLStreamConstants.COMMENT, reader.next());
+        assertEquals("a- -b- - -c-d- ", reader.getText());
+    }
+
+    @Test
+    public void aCommentWithoutDoubleHyphenIsUnchanged() throws Exception {
+        writer.writeStartElement("", "root", "");
+        writer.writeComment("-a-b");
+        writer.writeEndDocument();
+
+        assertEquals("<root><!---a-b--></root>\n", getOutput());
+    }
+
+    @Test
+    public void theEventsOfAReaderAreCopied() throws Exception {
+        String document = "<t:tusar xmlns:t=\"" + NS + "\" version=\"5.0\"><t:tests><!--c--><t:testsuite name=\"s &amp; t\">x &lt;y&gt;</t:testsuite></t:tests></t:tusar>";
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new ByteArrayInputStream(document.getBytes("UTF-8")));
+        writer.writeStartDocument();
+        while (reader.hasNext()) {
+            reader.next();
+            writer.copyEvent(reader);
+        }
+        reader.close();
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + document, getOutput());
+    }
+}
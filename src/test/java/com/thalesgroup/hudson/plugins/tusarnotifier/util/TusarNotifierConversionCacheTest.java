@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.util;
+
+import com.thalesgroup.hudson.plugins.tusarnotifier.types.CustomXSLConverter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TusarNotifierConversionCacheTest {
+
+    private static final String KEY = "0123456789abcdef";
+
+    private static final String STYLESHEET = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:output method=\"xml\" encoding=\"UTF-8\"/>"
+            + "<xsl:template match=\"/report\"><tusar version=\"{@version}\"/></xsl:template>"
+            + "</xsl:stylesheet>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TusarNotifierConversionCache cache;
+
+    private File xslFile;
+
+    private File outputDir;
+
+    @Before
+    public void createCache() throws IOException {
+        cache = new TusarNotifierConversionCache(folder.newFolder("cache"), 1024 * 1024);
+        xslFile = write(folder.newFile("custom.xsl"), STYLESHEET);
+        outputDir = folder.newFolder("output");
+    }
+
+    private static File write(File file, String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[1024];
+            int n;
+            while ((n = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, n);
+            }
+            return sb.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private File convert(String version, File target) throws Exception {
+        File report = write(new File(folder.getRoot(), "report-" + version + ".xml"), "<report version=\"" + version + "\"/>");
+        CustomXSLConverter.convert(xslFile, report, target, null);
+        return target;
+    }
+
+    private File getEntry() {
+        return new File(new File(folder.getRoot(), "cache"), KEY + ".xml");
+    }
+
+    @Test
+    public void anUnknownConversionIsNotRestored() {
+        assertFalse(cache.restore(KEY, new File(outputDir, "TUSAR-test.xml")));
+    }
+
+    @Test
+    public void aStoredConversionIsRestored() throws Exception {
+        File target = convert("1", new File(outputDir, "TUSAR-test.xml"));
+        String content = read(target);
+        cache.store(KEY, target);
+        assertTrue(target.delete());
+
+        assertTrue(cache.restore(KEY, target));
+        assertEquals(content, read(target));
+    }
+
+    @Test
+    public void theNextConversionToTheSameNameLeavesTheEntryUnchanged() throws Exception {
+        File target = convert("1", new File(outputDir, "TUSAR-test.xml"));
+        cache.store(KEY, target);
+        String entryContent = read(getEntry());
+
+        assertTrue(cache.restore(KEY, target));
+        convert("2", target);
+
+        assertTrue(read(target).contains("version=\"2\""));
+        assertEquals(entryContent, read(getEntry()));
+        assertTrue(cache.restore(KEY, target));
+        assertEquals(entryContent, read(target));
+    }
+
+    @Test
+    public void anInPlaceRewriteOfARestoredFileLeavesTheEntryUnchanged() throws Exception {
+        File target = convert("1", new File(outputDir, "TUSAR-test.xml"));
+        cache.store(KEY, target);
+        String entryContent = read(getEntry());
+
+        assertTrue(cache.restore(KEY, target));
+        write(target, "<tusar version=\"rewritten\"/>");
+
+        assertEquals(entryContent, read(getEntry()));
+    }
+
+    @Test
+    public void theRestoreLeavesNoTemporaryFile() throws Exception {
+        File target = convert("1", new File(outputDir, "TUSAR-test.xml"));
+        cache.store(KEY, target);
+        assertTrue(cache.restore(KEY, target));
+        convert("2", target);
+
+        String[] names = outputDir.list();
+        assertEquals(1, names.length);
+        assertEquals("TUSAR-test.xml", names[0]);
+    }
+
+    @Test
+    public void anEntryLargerThanTheCacheIsNotStored() throws Exception {
+        File target = convert("1", new File(outputDir, "TUSAR-test.xml"));
+        cache.store(KEY, target);
+        File smallCacheDir = folder.newFolder("small-cache");
+        TusarNotifierConversionCache smallCache = new TusarNotifierConversionCache(smallCacheDir, target.length() - 1);
+
+        smallCache.store("fedcba9876543210", target);
+
+        assertEquals(0, smallCacheDir.list().length);
+        assertTrue(getEntry().isFile());
+    }
+
+    @Test
+    public void aRemovedEntryIsNotRestored() throws Exception {
+        File target = convert("1", new File(outputDir, "TUSAR-test.xml"));
+        cache.store(KEY, target);
+
+        cache.remove(KEY);
+
+        assertFalse(getEntry().exists());
+        assertFalse(cache.restore(KEY, new File(outputDir, "TUSAR-other.xml")));
+    }
+}
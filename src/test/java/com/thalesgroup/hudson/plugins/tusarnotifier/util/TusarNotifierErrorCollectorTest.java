@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class TusarNotifierErrorCollectorTest {
+
+    /**
+     * The default number of kept types
+     */
+    private static final int MAX_TYPES = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * @return a message whose type differs for each index, the numbers of a message don't make its type
+     */
+    private static String getMessage(int type, int line) {
+        StringBuilder name = new StringBuilder();
+        for (int i = type; i >= 0; i = i / 26 - 1) {
+            name.insert(0, (char) ('a' + i % 26));
+        }
+        return "Element '" + name + "' is not allowed at line " + line + ".";
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    @Test
+    public void theErrorsAreGroupedByType() {
+        TusarNotifierErrorCollector errors = new TusarNotifierErrorCollector();
+        assertTrue(errors.isEmpty());
+
+        errors.add(getMessage(0, 10));
+        errors.add(getMessage(1, 20));
+        errors.add(getMessage(0, 30));
+
+        assertFalse(errors.isEmpty());
+        assertEquals(3, errors.getCount());
+        assertEquals(0, errors.getOtherCount());
+        Map<String, Integer> typeCounts = errors.getTypeCounts();
+        assertEquals(2, typeCounts.size());
+        Iterator<Map.Entry<String, Integer>> it = typeCounts.entrySet().iterator();
+        Map.Entry<String, Integer> first = it.next();
+        assertEquals(getMessage(0, 10), first.getKey());
+        assertEquals(Integer.valueOf(2), first.getValue());
+        Map.Entry<String, Integer> second = it.next();
+        assertEquals(getMessage(1, 20), second.getKey());
+        assertEquals(Integer.valueOf(1), second.getValue());
+    }
+
+    @Test
+    public void theTypesPastTheMaximumAreOnlyCounted() {
+        TusarNotifierErrorCollector errors = new TusarNotifierErrorCollector();
+        for (int type = 0; type < MAX_TYPES + 10; type++) {
+            errors.add(getMessage(type, type));
+        }
+        //A kept type is still counted past the maximum
+        errors.add(getMessage(0, 1000));
+        errors.add(getMessage(MAX_TYPES + 5, 1000));
+
+        assertEquals(MAX_TYPES + 12, errors.getCount());
+        assertEquals(MAX_TYPES, errors.getTypeCounts().size());
+        assertEquals(11, errors.getOtherCount());
+        assertEquals(Integer.valueOf(2), errors.getTypeCounts().get(getMessage(0, 0)));
+        assertFalse(errors.getTypeCounts().containsKey(getMessage(MAX_TYPES, MAX_TYPES)));
+    }
+
+    @Test
+    public void theNullErrorsAreIgnored() {
+        TusarNotifierErrorCollector errors = new TusarNotifierErrorCollector();
+        errors.addAll(null);
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void allTheErrorsAreWrittenToASidecarFileOutOfTheOutputDirectory() throws IOException {
+        File outputDirectory = folder.newFolder("output");
+        TusarNotifierErrorCollector errors = TusarNotifierErrorCollector.newInstance(outputDirectory, new File("report.xml"), "input");
+        List<String> messages = new ArrayList<String>();
+        for (int type = 0; type < MAX_TYPES + 10; type++) {
+            messages.add(getMessage(type, type));
+        }
+        errors.addAll(messages);
+        errors.close();
+
+        File sidecarFile = errors.getSidecarFile();
+        assertNotNull(sidecarFile);
+        assertEquals(new File(outputDirectory, TusarNotifierErrorCollector.SIDECAR_DIRECTORY), sidecarFile.getParentFile());
+        assertTrue(sidecarFile.getName().startsWith(TusarNotifierErrorCollector.SIDECAR_FILE_PREFIX));
+        assertTrue(sidecarFile.getName().endsWith("-input.txt.gz"));
+        assertEquals(messages, readLines(sidecarFile));
+        assertEquals(Arrays.asList(TusarNotifierErrorCollector.SIDECAR_DIRECTORY), Arrays.asList(outputDirectory.list()));
+    }
+
+    @Test
+    public void theInputAndOutputErrorsOfAReportHaveTheirOwnSidecarFile() throws IOException {
+        File outputDirectory = folder.newFolder("output");
+        TusarNotifierErrorCollector inputErrors = TusarNotifierErrorCollector.newInstance(outputDirectory, new File("report.xml"), "input");
+        TusarNotifierErrorCollector outputErrors = TusarNotifierErrorCollector.newInstance(outputDirectory, new File("report.xml"), "output");
+        inputErrors.add(getMessage(0, 1));
+        outputErrors.add(getMessage(1, 2));
+        inputErrors.close();
+        outputErrors.close();
+
+        assertFalse(inputErrors.getSidecarFile().equals(outputErrors.getSidecarFile()));
+        assertEquals(Arrays.asList(getMessage(0, 1)), readLines(inputErrors.getSidecarFile()));
+        assertEquals(Arrays.asList(getMessage(1, 2)), readLines(outputErrors.getSidecarFile()));
+    }
+
+    @Test
+    public void noSidecarFileIsLeftWithoutError() throws IOException {
+        File outputDirectory = folder.newFolder("output");
+        TusarNotifierErrorCollector errors = TusarNotifierErrorCollector.newInstance(outputDirectory, new File("report.xml"), "output");
+        errors.close();
+
+        assertNull(errors.getSidecarFile());
+        assertEquals(0, outputDirectory.list().length);
+    }
+
+    @Test
+    public void noSidecarFileIsWrittenWithoutOutputDirectory() {
+        TusarNotifierErrorCollector errors = TusarNotifierErrorCollector.newInstance(null, new File("report.xml"), "input");
+        errors.add(getMessage(0, 1));
+        errors.close();
+
+        assertEquals(1, errors.getCount());
+        assertNull(errors.getSidecarFile());
+    }
+}
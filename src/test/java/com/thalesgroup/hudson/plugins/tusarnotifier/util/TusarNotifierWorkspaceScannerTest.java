@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Thales Corporate Services SAS                             *
+ *                                                                              *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy *
+ * of this software and associated documentation files (the "Software"), to deal*
+ * in the Software without restriction, including without limitation the rights *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell    *
+ * copies of the Software, and to permit persons to whom the Software is        *
+ * furnished to do so, subject to the following conditions:                     *
+ *                                                                              *
+ * The above copyright notice and this permission notice shall be included in   *
+ * all copies or substantial portions of the Software.                          *
+ *                                                                              *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR   *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,     *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE  *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER       *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,*
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN    *
+ * THE SOFTWARE.                                                                *
+ *******************************************************************************/
+
+package com.thalesgroup.hudson.plugins.tusarnotifier.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TusarNotifierWorkspaceScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File ws;
+
+    @Before
+    public void createWorkspace() throws IOException {
+        ws = folder.newFolder("ws");
+        createFiles(
+                "a.xml",
+                "b.txt",
+                "reports/junit-1.xml",
+                "reports/junit-2.xml",
+                "reports/sub/junit-3.xml",
+                "module/reports/junit-4.xml",
+                "module/target/cobertura.xml",
+                "module/target/classes/nested.xml",
+                "reports/.svn/entries.xml",
+                "reports/junit-5.xml~");
+    }
+
+    private void createFiles(String... paths) throws IOException {
+        for (String path : paths) {
+            File file = new File(ws, path.replace('/', File.separatorChar));
+            file.getParentFile().mkdirs();
+            assertTrue(file.createNewFile());
+        }
+    }
+
+    private List<List<String>> scan(String... patterns) {
+        return new TusarNotifierWorkspaceScanner(Arrays.asList(patterns)).scan(ws);
+    }
+
+    private static List<String> paths(String... paths) {
+        String[] systemPaths = new String[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            systemPaths[i] = paths[i].replace('/', File.separatorChar);
+        }
+        return Arrays.asList(systemPaths);
+    }
+
+    @Test
+    public void dispatchesTheFilesToEachPattern() {
+        List<List<String>> result = scan("reports/*.xml", "**/target/*.xml");
+        assertEquals(2, result.size());
+        assertEquals(paths("reports/junit-1.xml", "reports/junit-2.xml"), result.get(0));
+        assertEquals(paths("module/target/cobertura.xml"), result.get(1));
+    }
+
+    @Test
+    public void aFileMatchingSeveralPatternsGoesToEachOfThem() {
+        List<List<String>> result = scan("reports/junit-1.xml", "reports/*-1.xml");
+        assertEquals(paths("reports/junit-1.xml"), result.get(0));
+        assertEquals(paths("reports/junit-1.xml"), result.get(1));
+    }
+
+    @Test
+    public void aSingleStarDoesNotMatchTheSubdirectories() {
+        assertEquals(paths("a.xml"), scan("*.xml").get(0));
+    }
+
+    @Test
+    public void aDoubleStarMatchesAllTheLevels() {
+        assertEquals(paths("module/reports/junit-4.xml", "reports/junit-1.xml", "reports/junit-2.xml", "reports/sub/junit-3.xml"),
+                scan("**/junit-*.xml").get(0));
+    }
+
+    @Test
+    public void aPrefixOfTheDirectoryNameDoesNotMatch() {
+        //The directories are pruned on whole names, 'targ' is not the start of 'target'
+        assertEquals(Collections.<String>emptyList(), scan("module/targ/*.xml").get(0));
+        assertEquals(paths("module/target/classes/nested.xml"), scan("module/targ*t/classes/*.xml").get(0));
+    }
+
+    @Test
+    public void aTrailingSeparatorMatchesTheWholeDirectory() {
+        assertEquals(paths("module/target/classes/nested.xml", "module/target/cobertura.xml"), scan("module/target/").get(0));
+    }
+
+    @Test
+    public void theIncludesOfAPatternAreCommaSeparated() {
+        assertEquals(paths("a.xml", "module/target/cobertura.xml", "reports/sub/junit-3.xml"),
+                scan(" a.xml , reports/sub/*.xml,,module\\target\\*.xml ").get(0));
+    }
+
+    @Test
+    public void theDefaultExcludesAreApplied() {
+        assertEquals(paths("reports/junit-1.xml", "reports/junit-2.xml", "reports/sub/junit-3.xml"),
+                scan("reports/**").get(0));
+    }
+
+    @Test
+    public void anEmptyPatternMatchesNothing() {
+        List<List<String>> result = scan("", null, "   ", "a.xml");
+        assertEquals(4, result.size());
+        assertEquals(Collections.<String>emptyList(), result.get(0));
+        assertEquals(Collections.<String>emptyList(), result.get(1));
+        assertEquals(Collections.<String>emptyList(), result.get(2));
+        assertEquals(paths("a.xml"), result.get(3));
+    }
+
+    @Test
+    public void aMissingBaseDirectoryMatchesNothing() {
+        List<List<String>> result = new TusarNotifierWorkspaceScanner(Arrays.asList("**/*.xml")).scan(new File(ws, "missing"));
+        assertEquals(Collections.<String>emptyList(), result.get(0));
+    }
+}
@@ -0,0 +1,17 @@
+<?xml version="1.0" encoding="UTF-8"?>
+<xsl:stylesheet version="1.0" xmlns:xsl="http://www.w3.org/1999/XSL/Transform">
+    <xsl:template match="/">
+        <report version="1">
+            <tests>
+                <xsl:for-each select="testsuite/testcase">
+                    <test suite="{../@name}" name="{@name}" failures="{count(failure)}"/>
+                </xsl:for-each>
+                <xsl:for-each select="testsuite/system-out">
+                    <output>
+                        <xsl:value-of select="."/>
+                    </output>
+                </xsl:for-each>
+            </tests>
+        </report>
+    </xsl:template>
+</xsl:stylesheet>